@@ -14,10 +14,19 @@ set SED="%SED:~1%"
 for /f "tokens=2 delims==" %%i in ('findstr "^POSTFIX_RAW_TEMPS" config.txt') do set POSTFIX_RAW_TEMPS=%%i
 set POSTFIX_RAW_TEMPS=%POSTFIX_RAW_TEMPS:~1%
 
+for /f "tokens=2 delims==" %%i in ('findstr "^RAW_TEMPS_FORMAT" config.txt') do set RAW_TEMPS_FORMAT=%%i
+set RAW_TEMPS_FORMAT=%RAW_TEMPS_FORMAT:~1%
+
 
 for %%a in (%1) do set OUTPUT_FILE=%%~na
 set OUTPUT_FILE=%2\%OUTPUT_FILE%%POSTFIX_RAW_TEMPS%
 
+if "%RAW_TEMPS_FORMAT%"=="P2" goto p2
+
+%EXIFTOOL% -b -RawThermalImage %1 | convert - -depth 16 %OUTPUT_FILE%.pgm
+goto :eof
+
+:p2
 %EXIFTOOL% -b -RawThermalImage %1 | convert - %OUTPUT_FILE%.png
 
 convert %OUTPUT_FILE%.png -compress none %OUTPUT_FILE%.pgm
@@ -25,4 +34,4 @@ convert %OUTPUT_FILE%.png -compress none %OUTPUT_FILE%.pgm
 %SED% -i 1,3d %OUTPUT_FILE%.pgm
 
 del %OUTPUT_FILE%.png
-del .\sed*.
\ No newline at end of file
+del .\sed*.
@@ -6,15 +6,21 @@
 
 POSTFIX_RAW_TEMPS=$(grep "^POSTFIX_RAW_TEMPS" config.txt | cut -d'=' -f 2 | sed 's/^ //')
 
+RAW_TEMPS_FORMAT=$(grep "^RAW_TEMPS_FORMAT" config.txt | cut -d'=' -f 2 | sed 's/^ //')
+
 
 OUTPUT_FILE=$(basename "$1" .${1##*.})
 OUTPUT_FILE=$2/$OUTPUT_FILE$POSTFIX_RAW_TEMPS
 
-exiftool -b -RawThermalImage "$1" | convert - "$OUTPUT_FILE".png
+if [ "$RAW_TEMPS_FORMAT" = "P2" ]; then
+  exiftool -b -RawThermalImage "$1" | convert - "$OUTPUT_FILE".png
 
-convert "$OUTPUT_FILE".png -compress none "$OUTPUT_FILE".pgm
+  convert "$OUTPUT_FILE".png -compress none "$OUTPUT_FILE".pgm
 
-sed -i 1,3d "$OUTPUT_FILE".pgm
+  sed -i 1,3d "$OUTPUT_FILE".pgm
 
-rm -f "$OUTPUT_FILE".png
-rm -f ./sed*.
\ No newline at end of file
+  rm -f "$OUTPUT_FILE".png
+  rm -f ./sed*.
+else
+  exiftool -b -RawThermalImage "$1" | convert - -depth 16 "$OUTPUT_FILE".pgm
+fi
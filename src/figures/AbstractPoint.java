@@ -2,9 +2,7 @@ package figures;
 
 import java.util.List;
 import java.util.OptionalDouble;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.function.ToIntFunction;
 
 import static java.lang.Math.*;
 
@@ -56,14 +54,15 @@ public abstract class AbstractPoint {
      * точкам массива {@code points} с индексами из списка {@code indices}. Этот список должен содержать только
      * существующие индексы.
      */
-    public static <T extends AbstractPoint> int[] findMinAndMax(T[] points, List<Integer> indices, Function<T, Integer> f) {
+    public static <T extends AbstractPoint> int[] findMinAndMax(T[] points, List<Integer> indices, ToIntFunction<T> f) {
         int min = Integer.MAX_VALUE;
         int max = Integer.MIN_VALUE;
         for (int i : indices) {
-            if (f.apply(points[i]) < min)
-                min = f.apply(points[i]);
-            if (f.apply(points[i]) > max)
-                max = f.apply(points[i]);
+            int value = f.applyAsInt(points[i]);
+            if (value < min)
+                min = value;
+            if (value > max)
+                max = value;
         }
         return new int[]{min, max};
     }
@@ -72,10 +71,17 @@ public abstract class AbstractPoint {
      * Вычисляет минимальный и максимальный числа среди чисел, полученных в результате применения функции {@code f} к
      * точкам массива {@code points}.
      */
-    public static <T extends AbstractPoint> int[] findMinAndMax(T[] points, Function<T, Integer> f) {
-        List<Integer> allIndices = IntStream.rangeClosed(0, points.length - 1)
-                .boxed().collect(Collectors.toList());
-        return findMinAndMax(points, allIndices, f);
+    public static <T extends AbstractPoint> int[] findMinAndMax(T[] points, ToIntFunction<T> f) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (T point : points) {
+            int value = f.applyAsInt(point);
+            if (value < min)
+                min = value;
+            if (value > max)
+                max = value;
+        }
+        return new int[]{min, max};
     }
 
     /**
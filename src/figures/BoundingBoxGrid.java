@@ -0,0 +1,96 @@
+package figures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Содержит равномерную сетку (в системе координат Oxy) над окаймляющими прямоугольниками многоугольников, позволяющую
+ * находить многоугольники, окаймляющие прямоугольники которых пересекают заданный прямоугольник, не просматривая все
+ * многоугольники.
+ * <p>
+ * Каждый многоугольник получает номер, равный числу ранее добавленных многоугольников, и регистрируется во всех
+ * ячейках сетки, которые пересекает его окаймляющий прямоугольник.
+ */
+class BoundingBoxGrid {
+    /**
+     * Длина стороны ячейки (в пикселях).
+     */
+    private final int cellSize;
+    /**
+     * Номера многоугольников, зарегистрированных в ячейках, ключами которых являются номера ячеек.
+     */
+    private final Map<Long, List<Integer>> cells = new HashMap<>();
+    /**
+     * Окаймляющие прямоугольники многоугольников: по 4 числа на многоугольник (минимальный и максимальный номера
+     * строк, минимальный и максимальный номера столбцов).
+     */
+    private int[] boxes = new int[16 * 4];
+    /**
+     * Число многоугольников.
+     */
+    private int size;
+
+    BoundingBoxGrid(int cellSize) {
+        this.cellSize = Math.max(cellSize, 1);
+    }
+
+    /**
+     * Добавляет многоугольник {@code polygon} и возвращает его номер.
+     */
+    int add(Polygon<Point> polygon) {
+        int[] box = polygon.boundingBox();
+        if (4 * size == boxes.length)
+            boxes = Arrays.copyOf(boxes, 2 * boxes.length);
+        System.arraycopy(box, 0, boxes, 4 * size, 4);
+        for (int ci = cell(box[0]); ci <= cell(box[1]); ci++)
+            for (int cj = cell(box[2]); cj <= cell(box[3]); cj++)
+                cells.computeIfAbsent(key(ci, cj), k -> new ArrayList<>()).add(size);
+        return size++;
+    }
+
+    /**
+     * Возвращает число многоугольников.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает окаймляющий прямоугольник многоугольника с номером {@code index} в виде массива
+     * {@code {iMin, iMax, jMin, jMax}}.
+     */
+    int[] box(int index) {
+        return new int[]{boxes[4 * index], boxes[4 * index + 1], boxes[4 * index + 2], boxes[4 * index + 3]};
+    }
+
+    /**
+     * Возвращает номера многоугольников, окаймляющие прямоугольники которых пересекают прямоугольник со строками
+     * {@code iMin, ..., iMax} и столбцами {@code jMin, ..., jMax} (включая касание).
+     */
+    BitSet query(int iMin, int iMax, int jMin, int jMax) {
+        var result = new BitSet(size);
+        for (int ci = cell(iMin); ci <= cell(iMax); ci++)
+            for (int cj = cell(jMin); cj <= cell(jMax); cj++) {
+                List<Integer> indices = cells.get(key(ci, cj));
+                if (indices != null)
+                    for (int k : indices)
+                        if (boxes[4 * k] <= iMax && boxes[4 * k + 1] >= iMin &&
+                                boxes[4 * k + 2] <= jMax && boxes[4 * k + 3] >= jMin)
+                            result.set(k);
+            }
+        return result;
+    }
+
+    private int cell(int coordinate) {
+        return Math.floorDiv(coordinate, cellSize);
+    }
+
+    private static long key(int ci, int cj) {
+        return (long) ci << 32 | cj & 0xffffffffL;
+    }
+}
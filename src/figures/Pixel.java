@@ -11,6 +11,12 @@ import static java.lang.Math.min;
  * Ось c'x' направлена вдоль нижней стороны термограммы, ось c'y' - вдоль левой стороны термограммы, а ось c'z' - вверх.
  */
 public class Pixel extends AbstractPoint {
+    /**
+     * Точка {@code ({@link Integer#MIN_VALUE},{@link Integer#MIN_VALUE})}, возвращаемая методом
+     * {@link #findIntersection(Pixel, Pixel, Pixel, Pixel)}, если отрезки не пересекаются.
+     */
+    public final static Pixel NO_INTERSECTION = new Pixel(Integer.MIN_VALUE, Integer.MIN_VALUE);
+
     public Pixel(int i, int j) {
         super(i, j);
     }
@@ -34,12 +40,12 @@ public class Pixel extends AbstractPoint {
     /**
      * Возвращает точку пересечения отрезков [p1, p2] и [p3, p4] в случае, если они пересекаются по единственной точке и
      * эта точка является внутренней для каждого из этих отрезков. В противном случае возвращает точку
-     * {@code ({@link Integer#MIN_VALUE},{@link Integer#MIN_VALUE})}.
+     * {@link #NO_INTERSECTION}.
      * <p>
      * (https://vscode.ru/prog-lessons/nayti-tochku-peresecheniya-otrezkov.html)
      */
     public static Pixel findIntersection(Pixel p1, Pixel p2, Pixel p3, Pixel p4) {
-        Pixel no = new Pixel(Integer.MIN_VALUE, Integer.MIN_VALUE);
+        Pixel no = NO_INTERSECTION;
 
         // Добиваемся, чтобы было p1.i <= p2.i и p3.i <= p4.i.
         if (p2.getI() < p1.getI()) {
@@ -12,10 +12,7 @@ import java.io.IOException;
 import java.util.*;
 import java.util.List;
 import java.util.function.BiPredicate;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
+import java.util.function.ToIntFunction;
 
 import static java.lang.Math.*;
 
@@ -26,6 +23,16 @@ import static java.lang.Math.*;
  * @param <T> тип вершин
  */
 public class Polygon<T extends AbstractPoint> implements Figure<T> {
+    /**
+     * Вершина многоугольника, возвращаемого методами {@code unite()} и {@code unite2()} в случае, когда объединение
+     * невозможно.
+     */
+    private final static Point NONE = new Point(-1, -1);
+    /**
+     * Многоугольник, возвращаемый методами {@code unite()} и {@code unite2()} в случае, когда объединение невозможно.
+     */
+    private final static Polygon<Point> NO_POLYGON = new Rectangle<>(NONE, NONE).toPolygon();
+
     /**
      * Список вершин.
      */
@@ -38,6 +45,35 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
      * Площадь (в кв. метрах).
      */
     private final double earthSquare;
+    /**
+     * Величины, вычисленные по вершинам. Вычисляются при первом обращении и сбрасываются при изменении списка вершин
+     * (см. {@link #invalidate()}).
+     */
+    private volatile Geometry<T> geometry;
+
+    /**
+     * Содержит координаты вершин многоугольника по осям абсцисс и ординат, окаймляющий прямоугольник в виде массива
+     * {@code {iMin, iMax, jMin, jMax}}, стороны (для многоугольников в системе координат Oxy) и треугольники, из которых
+     * состоит многоугольник. Стороны и треугольники равны {@code null}, пока не вычислены.
+     * <p>
+     * Объект не изменяется после создания (при вычислении сторон или треугольников создаётся новый объект), поэтому
+     * многоугольник можно одновременно читать из нескольких потоков.
+     */
+    private static class Geometry<T extends AbstractPoint> {
+        private final int[] xs;
+        private final int[] ys;
+        private final int[] box;
+        private final Segment[] sides;
+        private final List<Triangle<T>> triangles;
+
+        private Geometry(int[] xs, int[] ys, int[] box, Segment[] sides, List<Triangle<T>> triangles) {
+            this.xs = xs;
+            this.ys = ys;
+            this.box = box;
+            this.sides = sides;
+            this.triangles = triangles;
+        }
+    }
 
     public Polygon(List<T> vertices, double focalLength) {
         this(vertices, -1, 0, focalLength, -1);
@@ -57,64 +93,169 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
      * Вычисляет высоту текущего многоугольника.
      */
     public int height() {
-        int[] j = findMinAndMax(T::getJ);
-        return j[1] - j[0] + 1;
+        int[] box = boundingBox();
+        return box[3] - box[2] + 1;
     }
 
     /**
      * Вычисляет ширину текущего многоугольника.
      */
     public int width() {
-        int[] i = findMinAndMax(T::getI);
-        return i[1] - i[0] + 1;
+        int[] box = boundingBox();
+        return box[1] - box[0] + 1;
     }
 
     /**
      * Создаёт окаймляющий прямоугольник для текущего многоугольника.
      */
     public Rectangle<T> boundingRectangle() {
-        int[] i = findMinAndMax(T::getI);
-        int[] j = findMinAndMax(T::getJ);
-        return new Rectangle<>((T) vertices.get(0).create(i[0], j[0]), (T) vertices.get(0).create(i[1], j[1]));
+        int[] box = boundingBox();
+        return new Rectangle<>((T) vertices.get(0).create(box[0], box[2]), (T) vertices.get(0).create(box[1], box[3]));
     }
 
     /**
      * Вычисляет минимальный и максимальный числа среди чисел, полученных в результате применения функции {@code f} ко
      * всем вершинам текущего многоугольника.
      */
-    public int[] findMinAndMax(Function<T, Integer> f) {
-        List<Integer> indices = new ArrayList<>();
-        for (int i = 0; i < vertices.size(); i++)
-            indices.add(i);
-        return AbstractPoint.findMinAndMax((T[]) vertices.toArray(new AbstractPoint[0]), indices, f);
+    public int[] findMinAndMax(ToIntFunction<T> f) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (T vertex : vertices) {
+            int value = f.applyAsInt(vertex);
+            if (value < min)
+                min = value;
+            if (value > max)
+                max = value;
+        }
+        return new int[]{min, max};
+    }
+
+    /**
+     * Возвращает величины, вычисленные по вершинам, вычисляя координаты вершин и окаймляющий прямоугольник, если они
+     * ещё не вычислены.
+     */
+    private Geometry<T> geometry() {
+        Geometry<T> g = geometry;
+        if (g == null) {
+            int[] xs = new int[vertices.size()];
+            int[] ys = new int[vertices.size()];
+            int iMin = Integer.MAX_VALUE, iMax = Integer.MIN_VALUE, jMin = Integer.MAX_VALUE, jMax = Integer.MIN_VALUE;
+            for (int k = 0; k < xs.length; k++) {
+                xs[k] = vertices.get(k).getI();
+                ys[k] = vertices.get(k).getJ();
+                iMin = min(iMin, xs[k]);
+                iMax = max(iMax, xs[k]);
+                jMin = min(jMin, ys[k]);
+                jMax = max(jMax, ys[k]);
+            }
+            g = new Geometry<>(xs, ys, new int[]{iMin, iMax, jMin, jMax}, null, null);
+            geometry = g;
+        }
+        return g;
+    }
+
+    /**
+     * Возвращает окаймляющий прямоугольник текущего многоугольника в виде массива {@code {iMin, iMax, jMin, jMax}}.
+     * Массив хранится в многоугольнике и не должен изменяться.
+     */
+    int[] boundingBox() {
+        return geometry().box;
+    }
+
+    /**
+     * Определяет, пересекаются ли окаймляющие прямоугольники многоугольников {@code first} и {@code second}, если
+     * первый из них расширить на {@code margin} во все стороны.
+     */
+    static boolean boxesIntersect(Polygon<?> first, Polygon<?> second, int margin) {
+        int[] box1 = first.boundingBox();
+        int[] box2 = second.boundingBox();
+        return box1[0] - margin <= box2[1] && box2[0] <= box1[1] + margin &&
+                box1[2] - margin <= box2[3] && box2[2] <= box1[3] + margin;
+    }
+
+    /**
+     * Сбрасывает вычисленные окаймляющий прямоугольник, стороны и треугольники. Вызывается после изменения списка
+     * вершин.
+     */
+    private void invalidate() {
+        geometry = null;
     }
 
     /**
      * Возвращает список треугольников, из которых состоит текущий многоугольник.
      */
     public List<Triangle<T>> toTriangles(double focalLength) {
-        List<Triangle<T>> triangles = new ArrayList<>();
-        for (int k = 1; k < vertices.size() - 1; k++)
-            triangles.add(new Triangle<>(Arrays.asList(vertices.get(0), vertices.get(k), vertices.get(k + 1)), focalLength));
-        return triangles;
+        return new ArrayList<>(triangles(focalLength));
     }
 
+    /**
+     * Возвращает хранящийся в многоугольнике список треугольников, из которых он состоит. Список не должен изменяться.
+     */
+    private List<Triangle<T>> triangles(double focalLength) {
+        Geometry<T> g = geometry();
+        if (g.triangles == null) {
+            List<Triangle<T>> list = new ArrayList<>();
+            for (int k = 1; k < vertices.size() - 1; k++)
+                list.add(new Triangle<>(Arrays.asList(vertices.get(0), vertices.get(k), vertices.get(k + 1)),
+                        focalLength));
+            g = new Geometry<>(g.xs, g.ys, g.box, g.sides, list);
+            geometry = g;
+        }
+        return g.triangles;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Площадь вычисляется по формуле площади Гаусса (шнурования). Для выпуклых многоугольников (с вершинами,
+     * упорядоченными по обходу) результат совпадает с суммой площадей треугольников, из которых состоит многоугольник.
+     */
     @Override
     public double square(double focalLength) {
-        double square = 0;
-        for (Triangle<T> triangle : toTriangles(focalLength))
-            square += triangle.square(focalLength);
-        return square;
+        Geometry<T> g = geometry();
+        int[] xs = g.xs;
+        int[] ys = g.ys;
+        long doubledSquare = 0;
+        for (int k = 0, n = xs.length; k < n; k++) {
+            int next = k + 1 < n ? k + 1 : 0;
+            doubledSquare += (long) xs[k] * ys[next] - (long) xs[next] * ys[k];
+        }
+        return 0.5 * Math.abs(doubledSquare);
     }
 
     @Override
     public boolean contains(T point, double focalLength, double eps) {
-        for (Triangle<T> triangle : toTriangles(focalLength))
+        for (Triangle<T> triangle : triangles(focalLength))
             if (triangle.contains(point, focalLength, eps))
                 return true;
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Вершины, лежащие вне окаймляющего прямоугольника текущего многоугольника, заведомо не принадлежат ему и не
+     * проверяются. При {@code eps > 0} точки, близкие к наклонным сторонам, могут лежать вне окаймляющего
+     * прямоугольника по оси Oy (см. {@link AbstractPoint#isInLine(AbstractPoint, AbstractPoint, double)}), поэтому в
+     * этом случае проверяется только координата по оси Ox (с запасом {@code eps}).
+     */
+    @Override
+    public List<T> verticesFrom(Polygon<T> polygon, double focalLength, double eps) {
+        List<T> res = new ArrayList<>();
+        int margin = eps > 0 ? (int) floor(eps) : 0;
+        int[] box = boundingBox();
+        int[] otherBox = polygon.boundingBox();
+        if (box[0] - margin > otherBox[1] || otherBox[0] > box[1] + margin ||
+                eps <= 0 && (box[2] > otherBox[3] || otherBox[2] > box[3]))
+            return res;
+        for (T vertex : polygon.getVertices())
+            if (vertex.getI() >= box[0] - margin && vertex.getI() <= box[1] + margin &&
+                    (eps > 0 || vertex.getJ() >= box[2] && vertex.getJ() <= box[3]) &&
+                    contains(vertex, focalLength, eps))
+                res.add(vertex);
+        return res;
+    }
+
     /**
      * Возвращает многоугольник, который является пересечением многоугольников {@code polygon1} и {@code polygon2}.
      */
@@ -135,7 +276,7 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
                         v1.get(i + 1 < v1.size() ? i + 1 : 0),
                         v2.get(j),
                         v2.get(j + 1 < v2.size() ? j + 1 : 0));
-                if (!intersection.equals(new Pixel(Integer.MIN_VALUE, Integer.MIN_VALUE)))
+                if (!intersection.equals(Pixel.NO_INTERSECTION))
                     vertices.add(intersection);
             }
         return new Polygon<>(AbstractPoint.order(vertices), focalLength);
@@ -165,10 +306,15 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
      */
     public static boolean intersects(Polygon<Point> polygon1, Polygon<Point> polygon2, double focalLength,
                                      boolean isSloping) {
+        // Все проверки ниже требуют общей точки у многоугольников (с точностью 0), которой нет, если не пересекаются
+        // их окаймляющие прямоугольники.
+        if (!boxesIntersect(polygon1, polygon2, 0))
+            return false;
+
         List<Point> v1 = polygon1.getVertices();
         List<Point> v2 = polygon2.getVertices();
-        Segment[] s1 = getSides(polygon1);
-        Segment[] s2 = getSides(polygon2);
+        Segment[] s1 = polygon1.sides();
+        Segment[] s2 = polygon2.sides();
 
         for (Point v : v1)
             for (Point u : v2)
@@ -185,7 +331,7 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
                         new Pixel(s.getA().getI(), s.getA().getJ()), new Pixel(s.getB().getI(), s.getB().getJ())) :
                         s.contains(v)) return true;
 
-        for (Segment side : getSides(polygon1))
+        for (Segment side : s1)
             if (side.intersectsSideOf(polygon2)) return true;
 
         return !polygon1.verticesFrom(polygon2, focalLength, 0).isEmpty() || !polygon2.verticesFrom(polygon1, focalLength, 0).isEmpty();
@@ -195,11 +341,22 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
      * Возвращает список сторон многоугольника {@code polygon}, соединяя последовательно его вершины.
      */
     public static Segment[] getSides(Polygon<Point> polygon) {
-        Segment[] sides = new Segment[polygon.vertices.size()];
-        for (int i = 0; i < polygon.vertices.size(); i++)
-            sides[i] = new Segment(polygon.vertices.get(i),
-                    polygon.vertices.get(i < polygon.vertices.size() - 1 ? i + 1 : 0));
-        return sides;
+        return polygon.sides().clone();
+    }
+
+    /**
+     * Возвращает хранящийся в многоугольнике (в системе координат Oxy) массив его сторон. Массив не должен изменяться.
+     */
+    Segment[] sides() {
+        Geometry<T> g = geometry();
+        if (g.sides == null) {
+            var array = new Segment[vertices.size()];
+            for (int i = 0; i < vertices.size(); i++)
+                array[i] = new Segment((Point) vertices.get(i), (Point) vertices.get(i < vertices.size() - 1 ? i + 1 : 0));
+            g = new Geometry<>(g.xs, g.ys, g.box, array, g.triangles);
+            geometry = g;
+        }
+        return g.sides;
     }
 
     /**
@@ -211,7 +368,9 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
      * не превышает величины {@code distance}.
      */
     private static boolean areClose(Polygon<Point> first, Polygon<Point> second, int distance) {
-        Segment[] sides = getSides(second);
+        if (!boxesIntersect(second, first, distance))
+            return false;
+        Segment[] sides = second.sides();
         for (Point vertex : first.vertices)
             for (Segment side : sides)
                 // Специально используется сокращённый оператор AND.
@@ -226,7 +385,7 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
      * @throws IllegalArgumentException если эта точка не является вершиной многоугольника
      */
     private static Segment incomingSide(Polygon<Point> polygon, Point vertex) {
-        Segment[] sides = getSides(polygon);
+        Segment[] sides = polygon.sides();
         for (Segment side : sides)
             if (side.getB().equals(vertex))
                 return side;
@@ -239,7 +398,7 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
      * @throws IllegalArgumentException если эта точка не является вершиной многоугольника
      */
     private static Segment outgoingSide(Polygon<Point> polygon, Point vertex) {
-        Segment[] sides = getSides(polygon);
+        Segment[] sides = polygon.sides();
         for (Segment side : sides)
             if (side.getA().equals(vertex))
                 return side;
@@ -256,6 +415,7 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
         polygon.vertices.removeIf(vertex ->
                 incomingSide(polygon, vertex).getA().getI() == outgoingSide(polygon, vertex).getB().getI() ||
                         incomingSide(polygon, vertex).getA().getJ() == outgoingSide(polygon, vertex).getB().getJ());
+        polygon.invalidate();
     }
 
     /**
@@ -279,7 +439,7 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
         var lengths = new ArrayList<Integer>();
         var perpendiculars = new ArrayList<Segment>();
         var sides = new ArrayList<Segment>();
-        Segment[] sides2 = getSides(second);
+        Segment[] sides2 = second.sides();
 
         for (Point vertex : first.vertices)
             for (Segment side : sides2)
@@ -288,7 +448,7 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
 
                     // vertex проектируется на концы стороны side
                     if (!vertex.projectableTo(side)) {
-                        Point end0 = getSides(first)[indexOfSide(first, vertex, side.isHorizontal())]
+                        Point end0 = first.sides()[indexOfSide(first, vertex, side.isHorizontal())]
                                 .getOtherEnd(vertex);
                         Point other = side.getOtherEnd(vertex.project(side));
 
@@ -335,7 +495,7 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
      * Значение {@code -1} может быть выдано, если эта точка является вершиной развёрнутого угла.
      */
     private static int indexOfSide(Polygon<Point> polygon, Point vertex, boolean isHorizontal) {
-        Segment[] sides = getSides(polygon);
+        Segment[] sides = polygon.sides();
         for (int i = 0; i < sides.length; i++)
             if ((vertex.equals(sides[i].getA()) || vertex.equals(sides[i].getB())) &&
                     (isHorizontal && sides[i].isHorizontal() ||
@@ -351,7 +511,7 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
      *                                  многоугольника
      */
     private static int indexOfSideWithPoint(Polygon<Point> polygon, Point point) {
-        Segment[] sides = getSides(polygon);
+        Segment[] sides = polygon.sides();
         for (int i = 0; i < sides.length; i++)
             if (sides[i].contains(point))
                 return i;
@@ -383,7 +543,7 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
      * Рисует многоугольник {@code polygon}.
      */
     public static void draw(Polygon<Point> polygon, BufferedImage image, Color color) {
-        Segment[] sides = getSides(polygon);
+        Segment[] sides = polygon.sides();
         for (Segment side : sides)
             side.draw(image, color);
     }
@@ -472,6 +632,7 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
                 iter.remove();
             prev = curr;
         }
+        invalidate();
     }
 
     public static void showSquares(List<Polygon<Point>> polygons, double height, double focalLength, double pixelSize, int resX, int resY) {
@@ -562,7 +723,7 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
         Point vertex0 = perpendicular.getA();
         Point end1 = perpendicular.getB();
         int side0Index = indexOfSide(first, vertex0, side1.isHorizontal());
-        int side1Index = ArrayUtils.indexOf(getSides(second), side1);
+        int side1Index = ArrayUtils.indexOf(second.sides(), side1);
 
         Segment side0ToShorten = sides0[side0Index];
         Segment side1ToShorten = sides1[side1Index];
@@ -687,7 +848,7 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
                 .toPolygon();
         Polygon<Point> connectingRectanglePoint = toPolygonPoint(connectingRectangle, focalLength, resY);
 
-        Polygon<Point> no = new Rectangle<>(new Point(-1, -1), new Point(-1, -1)).toPolygon();
+        Polygon<Point> no = NO_POLYGON;
 
         for (Polygon<Point> p : polygons)
             // Т. к. p может быть невыпуклым, то возможен ошибочный результат true (если эти многоугольники не
@@ -738,11 +899,11 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
                 continue;
             }
 
-            if (!unitedPolygon.vertices.get(0).equals(new Point(-1, -1)))
+            if (!unitedPolygon.vertices.get(0).equals(NONE))
                 return unitedPolygon;
         }
 
-        return new Rectangle<>(new Point(-1, -1), new Point(-1, -1)).toPolygon();
+        return NO_POLYGON;
     }
 
     /**
@@ -750,6 +911,11 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
      * Условия, при выполнении которых происходит объединение, перечислены в методах
      * {@link Polygon#perpendicular(Polygon, Polygon, int)} и
      * {@link Polygon#unite(Polygon, Polygon, Segment, Segment, List, Polygon, double, double, double, int)}.
+     * <p>
+     * Окаймляющие прямоугольники объединений добавляются в сетку {@code changes}. Многоугольник, рядом с которым (с
+     * учётом окаймляющих прямоугольников его возможных пар) нет объединений с номерами, не меньшими {@code since},
+     * повторно не рассматривается: на предыдущей итерации он уже не смог объединиться ни с одним многоугольником при
+     * тех же многоугольниках вокруг. Если {@code since < 0}, то рассматриваются все многоугольники.
      *
      * @see Polygon#perpendicular(Polygon, Polygon, int)
      * @see Polygon#unite(Polygon, Polygon, Segment, Segment, List, Polygon, double, double, double, int)
@@ -757,51 +923,84 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
     private static List<Polygon<Point>> toBiggerPolygons(List<Polygon<Point>> polygons, int distance,
                                                          Polygon<Pixel> overlap, String thermogramName, double height,
                                                          double focalLength, double pixelSize, int resY,
-                                                         BiPredicate<Polygon<Point>, Polygon<Point>> condition) {
+                                                         BiPredicate<Polygon<Point>, Polygon<Point>> condition,
+                                                         BoundingBoxGrid changes, int since) {
         var newPolygons = new ArrayList<Polygon<Point>>();
-        var processed = new ArrayList<Integer>();
+        var processed = new BitSet(polygons.size());
+
+        // Многоугольники могут объединиться, только если их окаймляющие прямоугольники, один из которых расширен на
+        // distance, пересекаются (см. метод perpendicular()), а соединяющий их прямоугольник лежит внутри
+        // окаймляющего прямоугольника их объединения. Поэтому пары и мешающие объединению многоугольники ищутся
+        // только среди близких многоугольников.
+        var grid = new BoundingBoxGrid(4 * distance);
+        for (Polygon<Point> polygon : polygons)
+            grid.add(polygon);
+        var newGrid = new BoundingBoxGrid(4 * distance);
 
         for (int i = 0; i < polygons.size(); i++)
-            if (!Helper.isIn(processed, i)) {
-                int j;
-                for (j = i + 1; j < polygons.size(); j++)
-                    if (!Helper.isIn(processed, j)) {
+            if (!processed.get(i)) {
+                int[] box = grid.box(i);
+                BitSet candidates = grid.query(box[0] - distance, box[1] + distance, box[2] - distance,
+                        box[3] + distance);
+
+                boolean isUnchanged = since >= 0 && changes.query(box[0] - distance, box[1] + distance,
+                        box[2] - distance, box[3] + distance).length() <= since;
+                for (int j = candidates.nextSetBit(i + 1); isUnchanged && j >= 0; j = candidates.nextSetBit(j + 1))
+                    if (!processed.get(j)) {
+                        int[] boxJ = grid.box(j);
+                        isUnchanged = changes.query(min(box[0], boxJ[0]) - distance, max(box[1], boxJ[1]) + distance,
+                                min(box[2], boxJ[2]) - distance, max(box[3], boxJ[3]) + distance).length() <= since;
+                    }
+                if (isUnchanged) {
+                    newPolygons.add(polygons.get(i));
+                    newGrid.add(polygons.get(i));
+                    continue;
+                }
+
+                boolean isUnited = false;
+                for (int j = candidates.nextSetBit(i + 1); j >= 0; j = candidates.nextSetBit(j + 1))
+                    if (!processed.get(j)) {
                         if (!(condition == null || condition.test(polygons.get(i), polygons.get(j))))
                             continue;
 
-                        int ii = i;
-                        int jj = j;
-                        List<Integer> indices = IntStream.rangeClosed(0, polygons.size() - 1)
-                                .boxed().collect(Collectors.toList()).stream()
-                                .filter(k -> k > ii && k != jj && !Helper.isIn(processed, k))
-                                .collect(Collectors.toList());
-
-                        var polygonsNotProcessed = new ArrayList<Polygon<Point>>();
-                        for (int k : indices)
-                            polygonsNotProcessed.add(polygons.get(k));
-
-                        List<Polygon<Point>> polygonsTmp =
-                                Stream.concat(newPolygons.stream(), polygonsNotProcessed.stream())
-                                        .collect(Collectors.toList());
+                        int[] boxJ = grid.box(j);
+                        int iMin = min(box[0], boxJ[0]) - distance;
+                        int iMax = max(box[1], boxJ[1]) + distance;
+                        int jMin = min(box[2], boxJ[2]) - distance;
+                        int jMax = max(box[3], boxJ[3]) + distance;
+
+                        var polygonsTmp = new ArrayList<Polygon<Point>>();
+                        BitSet near = newGrid.query(iMin, iMax, jMin, jMax);
+                        for (int k = near.nextSetBit(0); k >= 0; k = near.nextSetBit(k + 1))
+                            polygonsTmp.add(newPolygons.get(k));
+                        near = grid.query(iMin, iMax, jMin, jMax);
+                        for (int k = near.nextSetBit(i + 1); k >= 0; k = near.nextSetBit(k + 1))
+                            if (k != j && !processed.get(k))
+                                polygonsTmp.add(polygons.get(k));
 
                         // Пытаемся объединить многоугольники i и j.
                         Polygon<Point> unitedPolygon = unite2(polygons.get(i), polygons.get(j), distance, polygonsTmp,
                                 overlap, height, focalLength, pixelSize, resY);
 
                         // Если многоугольники i и j не объединились, то пытаемся объединить их в другом порядке.
-                        if (unitedPolygon.vertices.get(0).equals(new Point(-1, -1)))
+                        if (unitedPolygon.vertices.get(0).equals(NONE))
                             unitedPolygon = unite2(polygons.get(j), polygons.get(i), distance, polygonsTmp, overlap,
                                     height, focalLength, pixelSize, resY);
 
-                        if (!unitedPolygon.vertices.get(0).equals(new Point(-1, -1))) {
+                        if (!unitedPolygon.vertices.get(0).equals(NONE)) {
                             newPolygons.add(unitedPolygon);
-                            processed.add(j);
+                            newGrid.add(unitedPolygon);
+                            changes.add(unitedPolygon);
+                            processed.set(j);
+                            isUnited = true;
                             break;
                         }
                     }
                 // Если не смогли найти пару i-му многоугольнику, то просто его добавляем.
-                if (j == polygons.size())
+                if (!isUnited) {
                     newPolygons.add(polygons.get(i));
+                    newGrid.add(polygons.get(i));
+                }
             }
 
         return newPolygons;
@@ -809,6 +1008,10 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
 
     /**
      * Укрупняет итеративно список многоугольников {@code polygons} до тех пор, пока укрупнения возможны.
+     * <p>
+     * На каждой итерации, кроме первой, рассматриваются только многоугольники, рядом с которыми на предыдущей или
+     * текущей итерации произошли объединения (см. {@link #toBiggerPolygons}). Остальные многоугольники заведомо не
+     * объединятся, поэтому результат совпадает с результатом полного просмотра на каждой итерации.
      *
      * @return список укрупнённых многоугольников
      */
@@ -820,11 +1023,14 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
         List<Polygon<Point>> prevPolygons;
         int count = -1; // число итераций, приводящих к укрупнению
         var sizes = new ArrayList<Integer>(); // размеры первоначального и всех последующих списков многоугольников
+        var changes = new BoundingBoxGrid(4 * distance); // окаймляющие прямоугольники всех объединений
+        int since = -1; // число объединений до начала предыдущей итерации
         do {
             prevPolygons = newPolygons;
+            int unitedBefore = changes.size();
             try {
                 newPolygons = toBiggerPolygons(prevPolygons, distance, overlap, thermogramName, height, focalLength,
-                        pixelSize, resY, condition);
+                        pixelSize, resY, condition, changes, since);
             } catch (Exception e) {
                 System.out.println("Проблема на итерации " + (count + 2) + " в Polygon.enlargeIteratively(): " +
                         "ошибка в Polygon.toBiggerPolygons().\n" +
@@ -833,6 +1039,7 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
                 System.out.println();
                 break;
             }
+            since = unitedBefore;
             count++;
             sizes.add(prevPolygons.size());
         } while (newPolygons.size() < prevPolygons.size());
@@ -956,6 +1163,7 @@ public class Polygon<T extends AbstractPoint> implements Figure<T> {
                 (T) v1.create(v1.getI() + d * shift * cos(pipeAngle), v1.getJ() + d * shift * sin(pipeAngle)));
         getVertices().set(ind2,
                 (T) v2.create(v2.getI() + d * shift * cos(pipeAngle), v2.getJ() + d * shift * sin(pipeAngle)));
+        invalidate();
     }
 
     public static Pixel middle(Polygon<Pixel> d) {
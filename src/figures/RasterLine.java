@@ -0,0 +1,49 @@
+package figures;
+
+import java.util.function.DoubleUnaryOperator;
+
+
+/**
+ * Содержит обход пикселей отрезка (DDA): пиксели перебираются без создания объектов и передаются обработчику в виде
+ * пары целых координат.
+ * <p>
+ * Параметр {@code p} пробегает значения {@code from + t*(to-from)/steps}, {@code t = 0, ..., steps}, а обработчику
+ * передаются округления чисел {@code p} и {@code minor(p)}. Если {@code steps} равно модулю разности
+ * {@code to-from}, то {@code p} принимает все целые значения от {@code from} до {@code to}. Функция {@code minor}
+ * задаётся вызывающим методом, поэтому каждый метод сохраняет свою формулу прямой (и тем самым свой набор пикселей).
+ */
+public class RasterLine {
+    /**
+     * Обработчик пикселя отрезка.
+     */
+    @FunctionalInterface
+    public interface PixelVisitor {
+        /**
+         * Обрабатывает пиксель с координатами ({@code p}, {@code q}), где {@code p} - округление параметра, а
+         * {@code q} - округление значения функции {@code minor}.
+         *
+         * @return {@code false}, если обход нужно прекратить
+         */
+        boolean visit(int p, int q);
+    }
+
+    private RasterLine() {
+    }
+
+    /**
+     * Обходит пиксели отрезка, как описано в описании класса. Если {@code steps = 0}, то обрабатывается единственный
+     * пиксель, соответствующий {@code p = from}.
+     *
+     * @return {@code false}, если обход был прекращён обработчиком
+     */
+    public static boolean walk(int from, int to, int steps, DoubleUnaryOperator minor, PixelVisitor visitor) {
+        if (steps == 0)
+            return visitor.visit(from, (int) Math.round(minor.applyAsDouble(from)));
+        for (int t = 0; t <= steps; t++) {
+            double p = from + t * (to - from + 0.) / steps;
+            if (!visitor.visit((int) Math.round(p), (int) Math.round(minor.applyAsDouble(p))))
+                return false;
+        }
+        return true;
+    }
+}
@@ -1,8 +1,12 @@
 package figures;
 
+import main.BitMask;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.lang.Math.*;
 
@@ -162,59 +166,43 @@ public class Rectangle<T extends AbstractPoint> implements Figure<T> {
 
     /**
      * Определяет, пересекает ли вертикальный (относительно термограммы и горизонтальный относительно системы координат
-     * Oxy) отрезок [({@code i1}, {@code j}), ({@code i2}, {@code j})] какой-нибудь прямоугольник из списка
-     * {@code rectangles}.
+     * Oxy) отрезок [({@code i1}, {@code j}), ({@code i2}, {@code j})] какой-нибудь из уже построенных прямоугольников,
+     * точки которых отмечены в маске {@code covered}.
      */
-    private static boolean verticalSegmentIntersectsRectangles(int i1, int i2, int j,
-                                                               List<Rectangle<Point>> rectangles, double focalLength) {
+    private static boolean verticalSegmentIntersectsRectangles(int i1, int i2, int j, BitMask covered) {
         for (int k = min(i1, i2); k <= max(i1, i2); k++)
-            if (new Point(k, j).isInRectangles(rectangles, focalLength))
+            if (covered.get(k, j))
                 return true;
         return false;
     }
 
-    private static boolean horizontalSegmentIntersectsRectangles(int i, int j1, int j2,
-                                                                 List<Rectangle<Point>> rectangles, double focalLength) {
-        for (int k = min(j1, j2); k <= max(j1, j2); k++)
-            if (new Point(i, k).isInRectangles(rectangles, focalLength))
-                return true;
-        return false;
-    }
-
-    /**
-     * Возвращает число единиц в прямоугольнике {@code rectangle} из таблицы {@code table}.
-     */
-    private static int amountOfOnes(Rectangle<Point> rectangle, int[][] table) {
-        int count = 0;
-        for (int i = rectangle.left.getI(); i <= rectangle.right.getI(); i++)
-            for (int j = rectangle.left.getJ(); j <= rectangle.right.getJ(); j++)
-                if (table[i][j] == 1)
-                    count++;
-        return count;
+    private static boolean horizontalSegmentIntersectsRectangles(int i, int j1, int j2, BitMask covered) {
+        int k = covered.nextSetBit(i, min(j1, j2));
+        return k != -1 && k <= max(j1, j2);
     }
 
     /**
      * Возвращает прямоугольник, чья верхняя (относительно термограммы) левая вершина примерно совпадает с точкой
-     * {@code point}, на основании таблицы {@code table} и списка уже построенных прямоугольников {@code rectangles}.
+     * {@code point}, на основании маски {@code table}, её таблицы сумм {@code sums} и маски {@code covered}, в которой
+     * отмечены точки уже построенных прямоугольников. Прямоугольник не выходит за пределы строк с номерами, меньшими
+     * {@code rowTo}.
      */
-    private static Rectangle<Point> makeRectangle(int[][] table, Point point, List<Rectangle<Point>> rectangles,
-                                                  int maxLength, double focalLength) {
+    private static Rectangle<Point> makeRectangle(BitMask table, SummedAreaTable sums, BitMask covered, Point point,
+                                                  int maxLength, int rowTo) {
         int x = point.getI(), y = point.getJ();
         boolean incrementX, incrementY;
         do {
             incrementX = false;
             incrementY = false;
-            if (x + 1 < table.length && (maxLength == -1 || x + 1 - point.getI() + 1 <= maxLength) &&
-                    amountOfOnes(new Rectangle<>(new Point(x + 1, point.getJ()), new Point(x + 1, y)), table)
-                            > (y - point.getJ() + 1) / 2 &&
-                    !Rectangle.horizontalSegmentIntersectsRectangles(x + 1, point.getJ(), y, rectangles, focalLength)) {
+            if (x + 1 < rowTo && (maxLength == -1 || x + 1 - point.getI() + 1 <= maxLength) &&
+                    sums.amountOfOnes(x + 1, point.getJ(), x + 1, y) > (y - point.getJ() + 1) / 2 &&
+                    !Rectangle.horizontalSegmentIntersectsRectangles(x + 1, point.getJ(), y, covered)) {
                 x++;
                 incrementX = true;
             }
-            if (y + 1 < table[0].length && (maxLength == -1 || y + 1 - point.getJ() + 1 <= maxLength) &&
-                    amountOfOnes(new Rectangle<>(new Point(point.getI(), y + 1), new Point(x, y + 1)), table)
-                            > (x - point.getI() + 1) / 2 &&
-                    !Rectangle.verticalSegmentIntersectsRectangles(point.getI(), x, y + 1, rectangles, focalLength)) {
+            if (y + 1 < table.getWidth() && (maxLength == -1 || y + 1 - point.getJ() + 1 <= maxLength) &&
+                    sums.amountOfOnes(point.getI(), y + 1, x, y + 1) > (x - point.getI() + 1) / 2 &&
+                    !Rectangle.verticalSegmentIntersectsRectangles(point.getI(), x, y + 1, covered)) {
                 y++;
                 incrementY = true;
             }
@@ -222,28 +210,140 @@ public class Rectangle<T extends AbstractPoint> implements Figure<T> {
 
         int newI = point.getI();
         int newJ = point.getJ();
-        if (amountOfOnes(new Rectangle<>(new Point(newI, newJ), new Point(newI, y)), table) < (y - newJ + 1) / 2 &&
-                newI + 1 < table.length)
+        if (sums.amountOfOnes(newI, newJ, newI, y) < (y - newJ + 1) / 2 && newI + 1 < rowTo)
             newI++;
-        if (amountOfOnes(new Rectangle<>(new Point(newI, newJ), new Point(x, newJ)), table) < (x - newI + 1) / 2 &&
-                newJ + 1 < table[0].length)
+        if (sums.amountOfOnes(newI, newJ, x, newJ) < (x - newI + 1) / 2 && newJ + 1 < table.getWidth())
             newJ++;
         return new Rectangle<>(new Point(newI, newJ), new Point(x, y));
     }
 
     /**
-     * Возвращает список прямоугольников, созданных на основании таблицы {@code table}.
+     * Возвращает список прямоугольников, созданных на основании маски {@code table}.
+     * <p>
+     * Число единиц в строках и столбцах, добавляемых к прямоугольникам при их построении, находится при помощи таблицы
+     * сумм, которая строится один раз. Точки построенных прямоугольников отмечаются в маске {@code covered}, поэтому
+     * проверка принадлежности точки или пересечения отрезка с построенными прямоугольниками не зависит от их числа.
+     */
+    public static List<Rectangle<Point>> findRectangles(BitMask table, int maxLength, double focalLength) {
+        return findRectangles(table, maxLength, focalLength, 0);
+    }
+
+    /**
+     * Аналогично методу {@link #findRectangles(BitMask, int, double)}, но если {@code tileSize > 0}, то маска
+     * разбивается на полосы из {@code tileSize} строк, которые обрабатываются параллельно (в общем пуле fork-join).
+     * Прямоугольники не выходят за пределы своих полос, поэтому после обработки полос прямоугольники, примыкающие к
+     * границам полос с разных сторон, объединяются (см.
+     * {@link #mergeAcrossSeam(List, List, int, SummedAreaTable, BitMask, int)}). Как и при последовательном
+     * построении, прямоугольники не пересекаются. Результат не зависит от порядка обработки полос, но может отличаться
+     * от результата последовательного построения.
      */
-    public static List<Rectangle<Point>> findRectangles(int[][] table, int maxLength, double focalLength) {
+    public static List<Rectangle<Point>> findRectangles(BitMask table, int maxLength, double focalLength,
+                                                        int tileSize) {
+        var sums = new SummedAreaTable(table);
+        // Полосы состоят из разных строк маски, а строки маски хранятся в разных словах, поэтому полосы могут
+        // заполнять общую маску covered одновременно.
+        var covered = new BitMask(table.getHeight(), table.getWidth());
+        if (tileSize <= 0 || tileSize >= table.getHeight())
+            return findRectangles(table, sums, covered, maxLength, 0, table.getHeight());
+
+        int tilesNumber = (table.getHeight() + tileSize - 1) / tileSize;
+        List<List<Rectangle<Point>>> tiles = IntStream.range(0, tilesNumber)
+                .parallel()
+                .mapToObj(t -> findRectangles(table, sums, covered, maxLength, t * tileSize,
+                        Math.min((t + 1) * tileSize, table.getHeight())))
+                .collect(Collectors.toList());
+
+        for (int t = 1; t < tilesNumber; t++)
+            mergeAcrossSeam(tiles.get(t - 1), tiles.get(t), t * tileSize, sums, covered, maxLength);
+        List<Rectangle<Point>> rectangles = new ArrayList<>();
+        for (List<Rectangle<Point>> tile : tiles)
+            rectangles.addAll(tile);
+        return rectangles;
+    }
+
+    /**
+     * Возвращает список прямоугольников, созданных на основании строк {@code rowFrom, ..., rowTo-1} маски
+     * {@code table}.
+     */
+    private static List<Rectangle<Point>> findRectangles(BitMask table, SummedAreaTable sums, BitMask covered,
+                                                         int maxLength, int rowFrom, int rowTo) {
         List<Rectangle<Point>> rectangles = new ArrayList<>();
         Rectangle<Point> rectangle;
-        for (int i = 0; i < table.length; i++)
-            for (int j = 0; j < table[0].length; j++)
-                if (table[i][j] == 1 && !(new Point(i, j).isInRectangles(rectangles, focalLength))) {
-                    rectangle = makeRectangle(table, new Point(i, j), rectangles, maxLength, focalLength);
-                    if (!rectangle.isSegment())
+        for (int i = rowFrom; i < rowTo; i++)
+            for (int j = table.nextSetBit(i, 0); j != -1; j = table.nextSetBit(i, j + 1))
+                if (!covered.get(i, j)) {
+                    rectangle = makeRectangle(table, sums, covered, new Point(i, j), maxLength, rowTo);
+                    if (!rectangle.isSegment()) {
                         rectangles.add(rectangle);
+                        // Если какая-нибудь координата left-вершины больше соответствующей координаты right-вершины,
+                        // то прямоугольник не содержит точек и маска не изменяется.
+                        covered.fillRectangle(rectangle.left.getI(), rectangle.left.getJ(), rectangle.right.getI(),
+                                rectangle.right.getJ());
+                    }
                 }
         return rectangles;
     }
-}
\ No newline at end of file
+
+    /**
+     * Объединяет прямоугольники из списка {@code upper}, примыкающие снизу (относительно термограммы) к границе полос,
+     * проходящей между строками {@code seam-1} и {@code seam}, с прямоугольниками из списка {@code lower},
+     * примыкающими к ней сверху.
+     * <p>
+     * Прямоугольники {@code a} из {@code upper} и {@code b} из {@code lower} объединяются, если пересечение их
+     * проекций на ось Oy составляет не менее половины проекции более широкого из них, высота объединения не превышает
+     * {@code maxLength} (если {@code maxLength != -1}), единицы составляют больше половины точек объединения и
+     * объединение не пересекает других прямоугольников (т. е. точки объединения, не принадлежащие {@code a} и
+     * {@code b}, не отмечены в маске {@code covered}). Объединение - прямоугольник, описанный около {@code a} и
+     * {@code b}, - отмечается в маске {@code covered} и заменяет {@code b} в списке {@code lower} (поэтому может быть
+     * объединено на следующей границе), а {@code a} удаляется из списка {@code upper}. Прямоугольники просматриваются
+     * в порядке их следования в списках, поэтому результат детерминирован.
+     */
+    private static void mergeAcrossSeam(List<Rectangle<Point>> upper, List<Rectangle<Point>> lower, int seam,
+                                        SummedAreaTable sums, BitMask covered, int maxLength) {
+        var merged = new boolean[lower.size()];
+        for (var iterator = upper.iterator(); iterator.hasNext(); ) {
+            Rectangle<Point> a = iterator.next();
+            if (a.right.getI() != seam - 1 || a.left.getI() > a.right.getI() || a.left.getJ() > a.right.getJ())
+                continue;
+            for (int k = 0; k < lower.size(); k++) {
+                Rectangle<Point> b = lower.get(k);
+                if (merged[k] || b.left.getI() != seam || b.left.getI() > b.right.getI() ||
+                        b.left.getJ() > b.right.getJ())
+                    continue;
+                int overlap = Math.min(a.right.getJ(), b.right.getJ()) - Math.max(a.left.getJ(), b.left.getJ()) + 1;
+                int maxWidth = Math.max(a.right.getJ() - a.left.getJ(), b.right.getJ() - b.left.getJ()) + 1;
+                var union = new Rectangle<>(new Point(a.left.getI(), Math.min(a.left.getJ(), b.left.getJ())),
+                        new Point(b.right.getI(), Math.max(a.right.getJ(), b.right.getJ())));
+                if (2 * overlap >= maxWidth &&
+                        (maxLength == -1 || union.right.getI() - union.left.getI() + 1 <= maxLength) &&
+                        2 * sums.amountOfOnes(union.left.getI(), union.left.getJ(), union.right.getI(),
+                                union.right.getJ()) > union.squarePixels() &&
+                        !extensionIntersectsRectangles(a, union, covered) &&
+                        !extensionIntersectsRectangles(b, union, covered)) {
+                    covered.fillRectangle(union.left.getI(), union.left.getJ(), union.right.getI(),
+                            union.right.getJ());
+                    lower.set(k, union);
+                    merged[k] = true;
+                    iterator.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Определяет, пересекает ли какой-нибудь из прямоугольников, точки которых отмечены в маске {@code covered},
+     * часть прямоугольника {@code union}, лежащую в строках прямоугольника {@code rectangle} слева или справа от него
+     * (прямоугольник {@code rectangle} содержится в {@code union} по ширине).
+     */
+    private static boolean extensionIntersectsRectangles(Rectangle<Point> rectangle, Rectangle<Point> union,
+                                                         BitMask covered) {
+        for (int i = rectangle.left.getI(); i <= rectangle.right.getI(); i++)
+            if (union.left.getJ() < rectangle.left.getJ() && horizontalSegmentIntersectsRectangles(i,
+                    union.left.getJ(), rectangle.left.getJ() - 1, covered) ||
+                    rectangle.right.getJ() < union.right.getJ() && horizontalSegmentIntersectsRectangles(i,
+                            rectangle.right.getJ() + 1, union.right.getJ(), covered))
+                return true;
+        return false;
+    }
+}
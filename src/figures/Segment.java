@@ -132,20 +132,34 @@ public class Segment {
      * Определяет, содержит ли внутренность текущего отрезка какую-либо вершину многоугольника {@code polygon}.
      */
     public boolean containsVertexFrom(Polygon<Point> polygon) {
+        if (!intersectsBoxOf(polygon))
+            return false;
         for (Point vertex : polygon.getVertices())
             if (contains(vertex)) return true;
         return false;
     }
 
+    /**
+     * Определяет, пересекает ли текущий отрезок окаймляющий прямоугольник многоугольника {@code polygon} (включая
+     * касание). Если нет, то отрезок не имеет общих точек с многоугольником.
+     */
+    private boolean intersectsBoxOf(Polygon<Point> polygon) {
+        int[] box = polygon.boundingBox();
+        return Math.min(a.getI(), b.getI()) <= box[1] && box[0] <= Math.max(a.getI(), b.getI()) &&
+                Math.min(a.getJ(), b.getJ()) <= box[3] && box[2] <= Math.max(a.getJ(), b.getJ());
+    }
+
     /**
      * Определяет, пересекается ли текущий отрезок с какой-либо стороной многоугольника {@code polygon} по единственной
      * точке, которая является внутренней для каждого из этих отрезков.
      */
     public boolean intersectsSideOf(Polygon<Point> polygon) {
-        for (Segment side : Polygon.getSides(polygon))
+        if (!intersectsBoxOf(polygon))
+            return false;
+        for (Segment side : polygon.sides())
             if (!Pixel.findIntersection(new Pixel(a.getI(), a.getJ()), new Pixel(b.getI(), b.getJ()),
                     new Pixel(side.a.getI(), side.a.getJ()), new Pixel(side.b.getI(), side.b.getJ()))
-                    .equals(new Pixel(Integer.MIN_VALUE, Integer.MIN_VALUE)))
+                    .equals(Pixel.NO_INTERSECTION))
                 return true;
         return false;
     }
@@ -159,31 +173,31 @@ public class Segment {
         int maxJ = Math.max(a.getJ(), b.getJ());
         int minJ = Math.min(a.getJ(), b.getJ());
 
-        var rectangleImage = new Rectangle<>(new Point(0, 0), new Point(image.getWidth() - 1, image.getHeight() - 1));
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int rgb = color.getRGB();
 
         if (isHorizontal()) {
-            for (int j = minJ; j <= maxJ; j++)
-                if (rectangleImage.contains(new Point(j, a.getI()), 0, 0))
-                    image.setRGB(j, a.getI(), color.getRGB());
+            if (a.getI() >= 0 && a.getI() < height)
+                for (int j = Math.max(minJ, 0); j <= Math.min(maxJ, width - 1); j++)
+                    image.setRGB(j, a.getI(), rgb);
             return;
         }
         if (isVertical()) {
-            for (int i = minI; i <= maxI; i++)
-                if (rectangleImage.contains(new Point(a.getJ(), i), 0, 0))
-                    image.setRGB(a.getJ(), i, color.getRGB());
+            if (a.getJ() >= 0 && a.getJ() < width)
+                for (int i = Math.max(minI, 0); i <= Math.min(maxI, height - 1); i++)
+                    image.setRGB(a.getJ(), i, rgb);
             return;
         }
         // y=A*x+B - уравнение прямой, проходящей через концы текущего отрезка.
         double A = (a.getJ() - b.getJ()) / (a.getI() - b.getI() + 0.);
         double B = a.getJ() - A * a.getI();
-        double p; // точка, пробегающая отрезок [minI, maxI]
-        for (int i = 0; i <= Math.max(maxI - minI, maxJ - minJ); i++) {
-            p = minI + i * (maxI - minI + 0.) / Math.max(maxI - minI, maxJ - minJ);
-            int x = (int) Math.round(A * p + B);
-            int y = (int) Math.round(p);
-            if (rectangleImage.contains(new Point(x, y), 0, 0))
-                image.setRGB(x, y, color.getRGB());
-        }
+        // Параметр пробегает отрезок [minI, maxI].
+        RasterLine.walk(minI, maxI, Math.max(maxI - minI, maxJ - minJ), p -> A * p + B, (y, x) -> {
+            if (x >= 0 && x < width && y >= 0 && y < height)
+                image.setRGB(x, y, rgb);
+            return true;
+        });
     }
 
     /**
@@ -0,0 +1,51 @@
+package figures;
+
+import main.BitMask;
+
+
+/**
+ * Содержит таблицу сумм (summed-area table, integral image) бинарной таблицы, позволяющую находить число единиц в
+ * любом прямоугольнике бинарной таблицы за время {@code O(1)}.
+ * <p>
+ * Элемент {@code (i, j)} таблицы сумм равен числу единиц в прямоугольнике бинарной таблицы с вершинами {@code (0, 0)}
+ * и {@code (i-1, j-1)}. Таблица сумм хранится построчно в одном массиве и имеет размер
+ * {@code (height+1) x (width+1)}, где {@code height x width} - размер бинарной таблицы.
+ */
+class SummedAreaTable {
+    /**
+     * Число столбцов таблицы сумм.
+     */
+    private final int width;
+    /**
+     * Элементы таблицы сумм.
+     */
+    private final int[] sums;
+
+    /**
+     * Строит таблицу сумм для маски {@code mask}.
+     */
+    SummedAreaTable(BitMask mask) {
+        int height = mask.getHeight();
+        width = mask.getWidth() + 1;
+        sums = new int[(height + 1) * width];
+        for (int i = 0; i < height; i++) {
+            int rowSum = 0;
+            for (int j = 0; j < width - 1; j++) {
+                if (mask.get(i, j))
+                    rowSum++;
+                sums[(i + 1) * width + j + 1] = sums[i * width + j + 1] + rowSum;
+            }
+        }
+    }
+
+    /**
+     * Возвращает число единиц в прямоугольнике бинарной таблицы с вершинами ({@code i1}, {@code j1}) и ({@code i2},
+     * {@code j2}) (включительно). Если {@code i1 > i2} или {@code j1 > j2}, то возвращается {@code 0}.
+     */
+    int amountOfOnes(int i1, int j1, int i2, int j2) {
+        if (i1 > i2 || j1 > j2)
+            return 0;
+        return sums[(i2 + 1) * width + j2 + 1] - sums[i1 * width + j2 + 1] - sums[(i2 + 1) * width + j1] +
+                sums[i1 * width + j1];
+    }
+}
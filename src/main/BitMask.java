@@ -0,0 +1,249 @@
+package main;
+
+import java.nio.FloatBuffer;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+
+
+/**
+ * Содержит бинарную таблицу (маску) размером {@code height x width}, каждый элемент которой занимает один бит.
+ * Строки таблицы (начиная с верхней строки термограммы) хранятся в массиве типа {@code long[]}, причём каждая строка
+ * начинается с нового слова: элемент в строке {@code row} и столбце {@code col} - это бит с номером {@code col%64}
+ * слова с номером {@code row*wordsPerRow+col/64}. Неиспользуемые биты последнего слова строки всегда равны нулю.
+ * <p>
+ * Маска занимает в 32 раза меньше памяти, чем таблица типа {@code int[][]}, а операции над прямоугольниками и целыми
+ * масками выполняются сразу над 64 элементами.
+ */
+public class BitMask {
+    /**
+     * Ширина маски (число столбцов).
+     */
+    private final int width;
+    /**
+     * Высота маски (число строк).
+     */
+    private final int height;
+    /**
+     * Число слов, занимаемых одной строкой.
+     */
+    private final int wordsPerRow;
+    /**
+     * Биты маски.
+     */
+    private final long[] words;
+
+    /**
+     * Создаёт маску размером {@code height x width}, все элементы которой равны нулю.
+     */
+    public BitMask(int height, int width) {
+        this.width = width;
+        this.height = height;
+        wordsPerRow = (width + 63) >>> 6;
+        words = new long[height * wordsPerRow];
+    }
+
+    /**
+     * Возвращает маску, в которой единицы стоят в тех позициях, где температура таблицы {@code thermalFrame}
+     * удовлетворяет предикату {@code predicate}.
+     */
+    public static BitMask of(ThermalFrame thermalFrame, DoublePredicate predicate) {
+        return of(thermalFrame, new DoublePredicate[]{predicate})[0];
+    }
+
+    /**
+     * Возвращает маски, в {@code k}-й из которых единицы стоят в тех позициях, где температура таблицы
+     * {@code thermalFrame} удовлетворяет предикату {@code predicates[k]}. Таблица просматривается один раз.
+     */
+    public static BitMask[] of(ThermalFrame thermalFrame, DoublePredicate... predicates) {
+        var masks = new BitMask[predicates.length];
+        for (int k = 0; k < masks.length; k++)
+            masks[k] = new BitMask(thermalFrame.getHeight(), thermalFrame.getWidth());
+        int height = thermalFrame.getHeight();
+        int width = thermalFrame.getWidth();
+        int wordsPerRow = (width + 63) >>> 6;
+        for (int row = 0; row < height; row++) {
+            FloatBuffer values = thermalFrame.row(row);
+            int from = row * wordsPerRow;
+            for (int col = 0; col < width; col++) {
+                float value = values.get(col);
+                for (int k = 0; k < masks.length; k++)
+                    if (predicates[k].test(value))
+                        masks[k].words[from + (col >>> 6)] |= 1L << col;
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * Возвращает маску, в которой единицы стоят в тех позициях, где значение кадра {@code rawFrame} удовлетворяет
+     * предикату {@code predicate}.
+     */
+    public static BitMask of(RawFrame rawFrame, IntPredicate predicate) {
+        return of(rawFrame, new IntPredicate[]{predicate})[0];
+    }
+
+    /**
+     * Возвращает маски, в {@code k}-й из которых единицы стоят в тех позициях, где значение кадра {@code rawFrame}
+     * удовлетворяет предикату {@code predicates[k]}. Кадр просматривается один раз.
+     */
+    public static BitMask[] of(RawFrame rawFrame, IntPredicate... predicates) {
+        var masks = new BitMask[predicates.length];
+        for (int k = 0; k < masks.length; k++)
+            masks[k] = new BitMask(rawFrame.getHeight(), rawFrame.getWidth());
+        int[] data = rawFrame.getData();
+        int height = rawFrame.getHeight();
+        int width = rawFrame.getWidth();
+        int wordsPerRow = (width + 63) >>> 6;
+        for (int row = 0, i = 0; row < height; row++) {
+            int from = row * wordsPerRow;
+            for (int col = 0; col < width; col++, i++) {
+                int value = data[i];
+                for (int k = 0; k < masks.length; k++)
+                    if (predicates[k].test(value))
+                        masks[k].words[from + (col >>> 6)] |= 1L << col;
+            }
+        }
+        return masks;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Возвращает {@code true}, если элемент в строке {@code row} и столбце {@code col} равен единице.
+     */
+    public boolean get(int row, int col) {
+        return (words[row * wordsPerRow + (col >>> 6)] & 1L << col) != 0;
+    }
+
+    /**
+     * Записывает единицу в строку {@code row} и столбец {@code col}.
+     */
+    public void set(int row, int col) {
+        words[row * wordsPerRow + (col >>> 6)] |= 1L << col;
+    }
+
+    /**
+     * Записывает единицы во все позиции прямоугольника со строками {@code row1, ..., row2} и столбцами
+     * {@code col1, ..., col2}. Если {@code row1 > row2} или {@code col1 > col2}, то маска не изменяется.
+     */
+    public void fillRectangle(int row1, int col1, int row2, int col2) {
+        if (col1 > col2)
+            return;
+        int firstWord = col1 >>> 6;
+        int lastWord = col2 >>> 6;
+        long firstMask = -1L << col1;
+        long lastMask = -1L >>> 63 - (col2 & 63);
+        for (int row = row1; row <= row2; row++) {
+            int from = row * wordsPerRow;
+            if (firstWord == lastWord)
+                words[from + firstWord] |= firstMask & lastMask;
+            else {
+                words[from + firstWord] |= firstMask;
+                for (int w = firstWord + 1; w < lastWord; w++)
+                    words[from + w] = -1L;
+                words[from + lastWord] |= lastMask;
+            }
+        }
+    }
+
+    /**
+     * Возвращает маску, полученную из текущей заменой каждой единицы, стоящей в строке {@code row} и столбце
+     * {@code col}, на квадрат из единиц со строками {@code row, ..., row+length-1} и столбцами
+     * {@code col, ..., col+length-1} (части квадратов, выходящие за пределы маски, отбрасываются).
+     * <p>
+     * Две единицы, расстояние Чебышёва между которыми не превышает {@code length}, после такого расширения соединяются
+     * (с учётом соседства по диагонали).
+     */
+    public BitMask dilate(int length) {
+        // Расширение по горизонтали.
+        var horizontal = new BitMask(height, width);
+        for (int row = 0; row < height; row++)
+            for (int col = nextSetBit(row, 0); col != -1; col = nextSetBit(row, col + 1))
+                horizontal.fillRectangle(row, col, row, Math.min(col + length - 1, width - 1));
+        // Расширение по вертикали.
+        var result = new BitMask(height, width);
+        for (int row = 0; row < height; row++)
+            for (int r = Math.max(row - length + 1, 0); r <= row; r++)
+                for (int w = 0; w < wordsPerRow; w++)
+                    result.words[row * wordsPerRow + w] |= horizontal.words[r * wordsPerRow + w];
+        return result;
+    }
+
+    /**
+     * Оставляет единицы только в тех позициях, где единицы стоят и в маске {@code other} того же размера.
+     */
+    public void and(BitMask other) {
+        checkSize(other);
+        for (int w = 0; w < words.length; w++)
+            words[w] &= other.words[w];
+    }
+
+    /**
+     * Записывает нули в те позиции, где в маске {@code other} того же размера стоят единицы.
+     */
+    public void andNot(BitMask other) {
+        checkSize(other);
+        for (int w = 0; w < words.length; w++)
+            words[w] &= ~other.words[w];
+    }
+
+    /**
+     * Возвращает номер первого столбца, не меньшего {@code col}, в котором строка {@code row} содержит единицу, или
+     * {@code -1}, если такого столбца нет.
+     */
+    public int nextSetBit(int row, int col) {
+        if (col >= width)
+            return -1;
+        int from = row * wordsPerRow;
+        int w = col >>> 6;
+        long word = words[from + w] & -1L << col;
+        while (word == 0) {
+            if (++w == wordsPerRow)
+                return -1;
+            word = words[from + w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Возвращает число единиц в строке {@code row} в столбцах {@code col1, ..., col2}.
+     */
+    public int cardinality(int row, int col1, int col2) {
+        if (col1 > col2)
+            return 0;
+        int from = row * wordsPerRow;
+        int firstWord = col1 >>> 6;
+        int lastWord = col2 >>> 6;
+        long firstMask = -1L << col1;
+        long lastMask = -1L >>> 63 - (col2 & 63);
+        if (firstWord == lastWord)
+            return Long.bitCount(words[from + firstWord] & firstMask & lastMask);
+        int count = Long.bitCount(words[from + firstWord] & firstMask) +
+                Long.bitCount(words[from + lastWord] & lastMask);
+        for (int w = firstWord + 1; w < lastWord; w++)
+            count += Long.bitCount(words[from + w]);
+        return count;
+    }
+
+    /**
+     * Возвращает число единиц в маске.
+     */
+    public int cardinality() {
+        int count = 0;
+        for (long word : words)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    private void checkSize(BitMask other) {
+        if (other.width != width || other.height != height)
+            throw new IllegalArgumentException("Размеры масок (" + height + "x" + width + " и " + other.height + "x" +
+                    other.width + ") не совпадают.");
+    }
+}
@@ -0,0 +1,141 @@
+package main;
+
+import figures.Point;
+import figures.Rectangle;
+
+import java.util.Arrays;
+
+
+/**
+ * Содержит компоненты связности маски, найденные двухпроходным алгоритмом с системой непересекающихся множеств
+ * (union-find), и их характеристики: окаймляющие прямоугольники (в системе координат Oxy) и площади (в пикселях).
+ * <p>
+ * Единицы маски, расстояние Чебышёва между которыми не превышает {@code distance}, относятся к одной компоненте.
+ * Для этого компоненты ищутся в расширенной маске (см. {@link BitMask#dilate(int)}), а окаймляющие прямоугольники и
+ * площади вычисляются только по единицам исходной маски. При {@code distance <= 1} компоненты совпадают с обычными
+ * компонентами 8-связности.
+ * <p>
+ * Время работы линейно зависит от размера маски. Компоненты упорядочены по положению их первой (при построчном
+ * просмотре маски) единицы.
+ */
+public class ConnectedComponents {
+    /**
+     * Характеристики компонент: по 5 чисел на компоненту (минимальный и максимальный номера строк, минимальный и
+     * максимальный номера столбцов, число единиц).
+     */
+    private final int[] stats;
+    /**
+     * Число компонент.
+     */
+    private final int size;
+
+    private ConnectedComponents(int[] stats, int size) {
+        this.stats = stats;
+        this.size = size;
+    }
+
+    /**
+     * Находит компоненты связности маски {@code mask}, объединяя единицы, расстояние Чебышёва между которыми не
+     * превышает {@code distance}.
+     */
+    public static ConnectedComponents find(BitMask mask, int distance) {
+        int height = mask.getHeight();
+        int width = mask.getWidth();
+        BitMask connectivity = distance > 1 ? mask.dilate(distance) : mask;
+
+        // Первый проход: предварительные метки и их объединение с метками соседей (слева, сверху-слева, сверху,
+        // сверху-справа).
+        int[] labels = new int[height * width];
+        Arrays.fill(labels, -1);
+        int[] parents = new int[16];
+        int labelsNumber = 0;
+        for (int row = 0; row < height; row++)
+            for (int col = connectivity.nextSetBit(row, 0); col != -1; col = connectivity.nextSetBit(row, col + 1)) {
+                int k = row * width + col;
+                int label = -1;
+                if (col > 0 && labels[k - 1] != -1)
+                    label = labels[k - 1];
+                if (row > 0)
+                    for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, width - 1); c++) {
+                        int neighbour = labels[k - width - col + c];
+                        if (neighbour != -1)
+                            label = label == -1 ? neighbour : union(parents, label, neighbour);
+                    }
+                if (label == -1) {
+                    if (labelsNumber == parents.length)
+                        parents = Arrays.copyOf(parents, 2 * parents.length);
+                    parents[labelsNumber] = labelsNumber;
+                    label = labelsNumber++;
+                }
+                labels[k] = label;
+            }
+
+        // Второй проход: окончательные метки и характеристики компонент по единицам исходной маски.
+        int[] componentOfRoot = new int[labelsNumber];
+        Arrays.fill(componentOfRoot, -1);
+        int[] stats = new int[16 * 5];
+        int size = 0;
+        for (int row = 0; row < height; row++)
+            for (int col = mask.nextSetBit(row, 0); col != -1; col = mask.nextSetBit(row, col + 1)) {
+                int root = find(parents, labels[row * width + col]);
+                int component = componentOfRoot[root];
+                if (component == -1) {
+                    if (5 * size == stats.length)
+                        stats = Arrays.copyOf(stats, 2 * stats.length);
+                    component = componentOfRoot[root] = size++;
+                    stats[5 * component] = stats[5 * component + 1] = row;
+                    stats[5 * component + 2] = stats[5 * component + 3] = col;
+                }
+                int p = 5 * component;
+                stats[p + 1] = row;
+                stats[p + 2] = Math.min(stats[p + 2], col);
+                stats[p + 3] = Math.max(stats[p + 3], col);
+                stats[p + 4]++;
+            }
+        return new ConnectedComponents(stats, size);
+    }
+
+    /**
+     * Возвращает число компонент.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает окаймляющий прямоугольник компоненты {@code k} в системе координат Oxy.
+     */
+    public Rectangle<Point> getBoundingRectangle(int k) {
+        return new Rectangle<>(new Point(stats[5 * k], stats[5 * k + 2]),
+                new Point(stats[5 * k + 1], stats[5 * k + 3]));
+    }
+
+    /**
+     * Возвращает число единиц исходной маски в компоненте {@code k}.
+     */
+    public int getArea(int k) {
+        return stats[5 * k + 4];
+    }
+
+    private static int find(int[] parents, int label) {
+        while (parents[label] != label) {
+            parents[label] = parents[parents[label]];
+            label = parents[label];
+        }
+        return label;
+    }
+
+    /**
+     * Объединяет множества, содержащие метки {@code a} и {@code b}, и возвращает корень объединения (меньшую из
+     * корневых меток).
+     */
+    private static int union(int[] parents, int a, int b) {
+        int rootA = find(parents, a);
+        int rootB = find(parents, b);
+        if (rootA < rootB)
+            parents[rootB] = rootA;
+        else
+            parents[rootA] = rootB;
+        return Math.min(rootA, rootB);
+    }
+}
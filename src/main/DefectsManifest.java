@@ -0,0 +1,291 @@
+package main;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * Содержит сведения о результатах предыдущего выделения дефектов (опция -d), позволяющие повторно не обрабатывать
+ * термограммы, входные данные которых не изменились.
+ * <p>
+ * Для каждой обработанной термограммы хранятся хеш SHA-256 её входных данных (термограммы, файла с температурными
+ * данными, значений конфигурационных параметров, параметров термограммы и предыдущей термограммы, запрещённых зон,
+ * углов наклона трубы, а также версии {@link #VERSION} и классов программы), хеш созданных изображений и строки,
+ * записанные во временные файлы, из которых собираются файлы {@code PIPE_SQUARES}, {@code SQUARES} и
+ * {@code PIPE_ANGLES}. Сведения хранятся в файле в формате JSON.
+ * <p>
+ * Записи в файл {@code PIPE_ANGLES_LOG} занимают гораздо больше места, поэтому для каждой термограммы они хранятся в
+ * отдельном файле в папке {@code logsDir}, а в сведениях - только хеш этого файла.
+ */
+public class DefectsManifest {
+    /**
+     * Версия формата сведений. Увеличивается при изменении формата; изменения самой программы учитываются
+     * автоматически (см. {@link #programHash()}).
+     */
+    public final static int VERSION = 2;
+    /**
+     * Число строк, хранящихся в сведениях о термограмме (для файлов {@code PIPE_SQUARES}, {@code SQUARES} и
+     * {@code PIPE_ANGLES}).
+     */
+    public final static int RESULTS_NUMBER = 3;
+
+    /**
+     * Сведения об обработке одной термограммы.
+     */
+    static class Entry {
+        private final String name;
+        private final String inputs;
+        private final String outputs;
+        private final String[] results;
+        /**
+         * Хеш файла с записями в файл {@code PIPE_ANGLES_LOG} или {@code null}, если записей нет.
+         */
+        private final String log;
+        private final double totalPipeSquare;
+        private final double totalSquare;
+
+        Entry(String name, String inputs, String outputs, String[] results, String log, double totalPipeSquare,
+              double totalSquare) {
+            this.name = name;
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.results = results;
+            this.log = log;
+            this.totalPipeSquare = totalPipeSquare;
+            this.totalSquare = totalSquare;
+        }
+
+        String[] getResults() {
+            return results;
+        }
+
+        double getTotalPipeSquare() {
+            return totalPipeSquare;
+        }
+
+        double getTotalSquare() {
+            return totalSquare;
+        }
+    }
+
+    private final static Gson GSON = new GsonBuilder()
+            .setFieldNamingPolicy(FieldNamingPolicy.UPPER_CAMEL_CASE)
+            .setPrettyPrinting()
+            .create();
+
+    /**
+     * Сведения об обработанных термограммах, ключами которых являются названия термограмм.
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /**
+     * Папка с записями в файл {@code PIPE_ANGLES_LOG}.
+     */
+    private final String logsDir;
+    /**
+     * Хеш классов программы.
+     */
+    private static String programHash;
+
+    private DefectsManifest(String logsDir) {
+        this.logsDir = logsDir;
+    }
+
+    /**
+     * Прочитывает сведения из файла {@code filename}, записи в файл {@code PIPE_ANGLES_LOG} для которых хранятся в
+     * папке {@code logsDir}. Если файл отсутствует или имеет некорректный формат, то возвращаются пустые сведения.
+     */
+    public static DefectsManifest read(String filename, String logsDir) {
+        var manifest = new DefectsManifest(logsDir);
+        if (!Files.isRegularFile(Paths.get(filename)))
+            return manifest;
+        try {
+            Entry[] entries = GSON.fromJson(Files.readString(Paths.get(filename), StandardCharsets.UTF_8),
+                    Entry[].class);
+            if (entries != null)
+                for (Entry entry : entries)
+                    if (entry != null && entry.name != null && entry.results != null &&
+                            entry.results.length == RESULTS_NUMBER)
+                        manifest.entries.put(entry.name, entry);
+        } catch (IOException | JsonParseException e) {
+            e.printStackTrace();
+        }
+        return manifest;
+    }
+
+    /**
+     * Записывает сведения о термограммах с названиями {@code names} (в указанном порядке) в файл {@code filename} и
+     * удаляет из папки {@code logsDir} файлы, не относящиеся к этим термограммам.
+     */
+    public void write(String filename, List<String> names) {
+        var list = new ArrayList<Entry>();
+        for (String name : names)
+            if (entries.containsKey(name))
+                list.add(entries.get(name));
+        try {
+            Files.writeString(Paths.get(filename), GSON.toJson(list) + "\n", StandardCharsets.UTF_8);
+            if (Files.isDirectory(Paths.get(logsDir))) {
+                var logs = list.stream()
+                        .filter(entry -> entry.log != null)
+                        .map(entry -> logPath(entry.name))
+                        .collect(Collectors.toSet());
+                try (Stream<Path> files = Files.list(Paths.get(logsDir))) {
+                    for (Path file : files.collect(Collectors.toList()))
+                        if (!logs.contains(file))
+                            Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Возвращает сохранённые сведения о термограмме {@code name}, если её входные данные имеют хеш {@code inputs},
+     * созданные изображения - хеш {@code outputs}, а файл с записями в файл {@code PIPE_ANGLES_LOG} не изменился, иначе
+     * - {@code null}.
+     *
+     * @throws IOException если произошла ошибка при чтении файла с записями
+     */
+    public Entry get(String name, String inputs, String outputs) throws IOException {
+        Entry entry = entries.get(name);
+        if (entry == null || !inputs.equals(entry.inputs) || !outputs.equals(entry.outputs))
+            return null;
+        if (entry.log != null && (!Files.isRegularFile(logPath(name)) ||
+                !entry.log.equals(hash(new String[0], logPath(name).toString()))))
+            return null;
+        return entry;
+    }
+
+    /**
+     * Записывает в файл {@code filename} сохранённые записи в файл {@code PIPE_ANGLES_LOG}, относящиеся к
+     * термограмме, сведения {@code entry} о которой получены методом {@link #get(String, String, String)}.
+     *
+     * @throws IOException если произошла ошибка при копировании
+     */
+    public void copyLog(Entry entry, String filename) throws IOException {
+        if (entry.log != null)
+            Files.copy(logPath(entry.name), Paths.get(filename), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Сохраняет сведения о термограмме {@code name}. Записи в файл {@code PIPE_ANGLES_LOG} копируются из файла
+     * {@code logFilename} в папку {@code logsDir}.
+     *
+     * @throws IOException если произошла ошибка при копировании
+     */
+    public void put(String name, String inputs, String outputs, String[] results, String logFilename,
+                    double totalPipeSquare, double totalSquare) throws IOException {
+        String log = null;
+        Path logPath = logPath(name);
+        if (Files.isRegularFile(Paths.get(logFilename)) && Files.size(Paths.get(logFilename)) > 0) {
+            Files.createDirectories(logPath.getParent());
+            Files.copy(Paths.get(logFilename), logPath, StandardCopyOption.REPLACE_EXISTING);
+            log = hash(new String[0], logPath.toString());
+        } else
+            Files.deleteIfExists(logPath);
+        entries.put(name, new Entry(name, inputs, outputs, results, log, totalPipeSquare, totalSquare));
+    }
+
+    private Path logPath(String name) {
+        return Paths.get(logsDir, name + ".txt");
+    }
+
+    /**
+     * Удаляет сведения о термограмме {@code name}.
+     */
+    public void remove(String name) {
+        entries.remove(name);
+    }
+
+    /**
+     * Возвращает хеш SHA-256 строк {@code strings} и содержимого файлов {@code filenames} в шестнадцатеричной записи.
+     * Отсутствующие файлы считаются пустыми, названия, равные {@code null}, пропускаются.
+     *
+     * @throws IOException если произошла ошибка при чтении файлов
+     */
+    public static String hash(String[] strings, String... filenames) throws IOException {
+        MessageDigest digest = sha256();
+        for (String str : strings) {
+            digest.update(String.valueOf(str).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        byte[] buffer = new byte[1 << 16];
+        for (String filename : filenames) {
+            if (filename == null)
+                continue;
+            Path path = Paths.get(filename);
+            if (Files.isRegularFile(path))
+                try (InputStream in = Files.newInputStream(path)) {
+                    for (int length; (length = in.read(buffer)) > 0; )
+                        digest.update(buffer, 0, length);
+                }
+            digest.update((byte) 0);
+        }
+        var hex = new StringBuilder();
+        for (byte b : digest.digest())
+            hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    /**
+     * Возвращает хеш SHA-256 версии {@link #VERSION} и классов программы: jar-файла, из которого запущена программа,
+     * или, если программа запущена из папки, всех файлов {@code .class} в этой папке. Тем самым после обновления
+     * программы сохранённые результаты не используются.
+     *
+     * @throws IOException если произошла ошибка при чтении файлов
+     */
+    public static synchronized String programHash() throws IOException {
+        if (programHash == null) {
+            Path location;
+            try {
+                location = Paths.get(DefectsManifest.class.getProtectionDomain().getCodeSource().getLocation()
+                        .toURI());
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+            List<Path> classes;
+            if (Files.isDirectory(location))
+                try (Stream<Path> files = Files.walk(location)) {
+                    classes = files
+                            .filter(path -> path.toString().endsWith(".class"))
+                            .sorted()
+                            .collect(Collectors.toList());
+                }
+            else
+                classes = List.of(location);
+            String[] strings = new String[classes.size() + 1];
+            strings[0] = String.valueOf(VERSION);
+            for (int k = 0; k < classes.size(); k++)
+                strings[k + 1] = location.relativize(classes.get(k)).toString();
+            programHash = hash(strings, classes.stream().map(Path::toString).toArray(String[]::new));
+        }
+        return programHash;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -11,12 +11,15 @@ import javenue.csv.Csv;
 import figures.Segment;
 
 import java.io.*;
+import java.nio.FloatBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.DoublePredicate;
 import java.util.function.Function;
+import java.util.function.IntPredicate;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -147,6 +150,43 @@ public final class Helper {
         return binTable;
     }
 
+    /**
+     * Возвращает маски, в {@code k}-й из которых единицы стоят в тех позициях, где температура таблицы
+     * {@code thermalFrame} принадлежит интервалу ({@code bands[k][0]}, {@code bands[k][1]}). Таблица просматривается
+     * один раз (см. {@link BitMask#of(ThermalFrame, DoublePredicate...)}).
+     */
+    public static BitMask[] findIf(ThermalFrame thermalFrame, double[][] bands) {
+        var predicates = new DoublePredicate[bands.length];
+        for (int k = 0; k < bands.length; k++) {
+            double tMin = bands[k][0];
+            double tMax = bands[k][1];
+            predicates[k] = num -> num > tMin && num < tMax;
+        }
+        return BitMask.of(thermalFrame, predicates);
+    }
+
+    /**
+     * Возвращает маски, в {@code k}-й из которых единицы стоят в тех позициях, где кадр необработанных температурных
+     * данных {@code rawFrame} содержит значение, соответствующее (при параметрах калибровки {@code params})
+     * температуре из интервала ({@code bands[k][0]}, {@code bands[k][1]}). Кадр просматривается один раз.
+     * Результат совпадает с результатом метода {@link main.Helper#findIf(ThermalFrame, double[][])}, применённого к
+     * таблице температур, однако температуры не вычисляются: границы интервалов один раз переводятся в диапазоны
+     * необработанных значений (см. {@link PlanckTable#rawRange(double, double)}), после чего сравниваются целые числа.
+     */
+    public static BitMask[] findIf(RawFrame rawFrame, double[][] bands, double[] params) {
+        PlanckTable planckTable = PlanckTable.of(params);
+        var predicates = new IntPredicate[bands.length];
+        for (int k = 0; k < bands.length; k++) {
+            double tMin = bands[k][0];
+            double tMax = bands[k][1];
+            int[] range = planckTable.rawRange(tMin, tMax);
+            predicates[k] = value -> range != null && value >= 0 && value <= 0xFFFF ?
+                    value >= range[0] && value <= range[1] :
+                    planckTable.toReal(value) > tMin && planckTable.toReal(value) < tMax;
+        }
+        return BitMask.of(rawFrame, predicates);
+    }
+
     /**
      * Печатает таблицу {@code table}.
      */
@@ -253,6 +293,20 @@ public final class Helper {
         writelnToFile(filename, str, true);
     }
 
+    /**
+     * Добавляет строку {@code str} (вместе с символом новой строки) в конец буфера {@code log}.
+     */
+    public static void log(StringBuilder log, String str) {
+        log.append(str).append('\n');
+    }
+
+    /**
+     * Записывает строку {@code str} в конец файла с названием {@code filename}.
+     */
+    public static void append(String filename, String str) {
+        writeToFile(filename, str, true);
+    }
+
     /**
      * Записывает строку {@code str+"\n"} в файл с названием {@code filename}, перезаписывая его.
      */
@@ -447,69 +501,45 @@ public final class Helper {
     }
 
     /**
-     * Конвертирует таблицу необработанных температурных данных {@code rawTable} в таблицу температур.
+     * Конвертирует таблицу необработанных температурных данных {@code rawTable} в таблицу температур при помощи
+     * {@link PlanckTable}.
      */
     public static double[][] rawTableToReal(int[][] rawTable, double[] params) {
+        PlanckTable planckTable = PlanckTable.of(params);
         double[][] realTable = new double[rawTable.length][rawTable[0].length];
         for (int i = 0; i < rawTable.length; i++)
             for (int j = 0; j < rawTable[0].length; j++)
-                realTable[i][j] = rawValueToReal(rawTable[i][j], params);
+                realTable[i][j] = planckTable.toReal(rawTable[i][j]);
         return realTable;
     }
 
     /**
-     * Извлекает таблицу размером {@code height x width} из файла {@code filename} в формате CSV с разделителем
-     * {@code separator}, содержащего по крайней мере {@code height*width} значений. Фактически, формирование таблицы
-     * происходит при помощи массива всех последовательных значений указанного файла. Число строк в нём и их длины
-     * произвольны.
+     * Конвертирует кадр необработанных температурных данных {@code rawFrame} в таблицу температур при помощи
+     * {@link PlanckTable}.
      */
-    public static int[][] extractTable(String filename, int height, int width, char separator) {
-        int[][] table = new int[height][width];
-        FileReader reader = null;
-        List<String[]> allData = null;
-
-        try {
-            reader = new FileReader(filename);
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        }
-        CSVParser parser = new CSVParserBuilder().withSeparator(separator).build();
-        CSVReader csvReader = new CSVReaderBuilder(reader)
-                .withCSVParser(parser)
-                .build();
-        try {
-            allData = csvReader.readAll();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        int i0 = 0;
-        int j0 = 0;
-        for (int i = 0; i < table.length; i++)
-            for (int j = 0; j < table[0].length; j++) {
-                table[i][j] = Integer.parseInt(allData.get(i0)[j0]);
-                if (j0 + 1 < allData.get(i0).length - 1)
-                    j0++;
-                else {
-                    j0 = 0;
-                    i0++;
-                }
-            }
-        return table;
+    public static double[][] rawFrameToReal(RawFrame rawFrame, double[] params) {
+        PlanckTable planckTable = PlanckTable.of(params);
+        double[][] realTable = new double[rawFrame.getHeight()][rawFrame.getWidth()];
+        for (int i = 0; i < realTable.length; i++)
+            planckTable.toReal(rawFrame.getData(), i, realTable[i]);
+        return realTable;
     }
 
     /**
-     * В таблице {@code table} ставит значение {@code 0} в тех позициях, которые принадлежат хотя бы одному
-     * прямоугольнику из списка {@code rectangles}.
+     * В маске {@code mask} ставит значение {@code 0} в тех позициях, которые принадлежат хотя бы одному
+     * прямоугольнику из списка {@code rectangles} (части прямоугольников, выходящие за пределы маски, не учитываются).
      * Точка ({@code i}, {@code j}) системы координат c'x'y' соответствует позиции ({@code RES_Y-1-j}, {@code i}) в
-     * таблице.
+     * маске.
      */
-    static void nullifyRectangles(int[][] table, List<Rectangle<Pixel>> rectangles, int resY) {
-        if (rectangles != null)
-            for (Rectangle<Pixel> rectangle : rectangles)
-                for (int i = rectangle.getLeft().getI(); i <= rectangle.getRight().getI(); i++)
-                    for (int j = rectangle.getLeft().getJ(); j <= rectangle.getRight().getJ(); j++)
-                        table[resY - 1 - j][i] = 0;
+    static void nullifyRectangles(BitMask mask, List<Rectangle<Pixel>> rectangles, int resY) {
+        if (rectangles == null)
+            return;
+        var zones = new BitMask(mask.getHeight(), mask.getWidth());
+        for (Rectangle<Pixel> rectangle : rectangles)
+            zones.fillRectangle(max(resY - 1 - rectangle.getRight().getJ(), 0), max(rectangle.getLeft().getI(), 0),
+                    min(resY - 1 - rectangle.getLeft().getJ(), mask.getHeight() - 1),
+                    min(rectangle.getRight().getI(), mask.getWidth() - 1));
+        mask.andNot(zones);
     }
 
     /**
@@ -542,15 +572,45 @@ public final class Helper {
     }
 
     /**
-     * Записывает таблицу температур в файл {@code realFilename} в формате CSV с разделителем {@code realSeparator},
-     * вычисляемую на основании таблицы размером {@code height x width} необработанных температурных данных, извлечённой
-     * из файла {@code rawFilename} в формате CSV с разделителем {@code rawSeparator}.
-     */
-    public static void rawFileToRealFile(String rawFilename, String realFilename, int height, int width,
-                                         char rawSeparator, char realSeparator, double[] params) {
-        int[][] rawTable = Helper.extractTable(rawFilename, height, width, rawSeparator);
-        double[][] realTable = Helper.rawTableToReal(rawTable, params);
-        Helper.writeAsCsv(realTable, realSeparator, realFilename);
+     * Записывает таблицу температур в файл {@code realFilename} в двоичном формате с кодированием {@code encoding} (см.
+     * {@link RealTempsFile}), вычисляемую на основании таблицы размером {@code height x width} необработанных
+     * температурных данных, извлечённой из файла {@code rawFilename} в формате PGM (см.
+     * {@link Pgm#read(String, int, int)}). Если {@code csvFilename} не равно {@code null}, то таблица температур
+     * дополнительно записывается в файл {@code csvFilename} в формате CSV с разделителем {@code realSeparator}.
+     *
+     * @throws IOException если произошла ошибка при чтении или записи файлов
+     */
+    public static void rawFileToRealFile(String rawFilename, String realFilename, String csvFilename, int height,
+                                         int width, RealTempsFile.Encoding encoding, char realSeparator,
+                                         double[] params) throws IOException {
+        RawFrame rawFrame = Pgm.read(rawFilename, width, height);
+        double[][] realTable = Helper.rawFrameToReal(rawFrame, params);
+        RealTempsFile.write(realTable, params, encoding, realFilename);
+        if (csvFilename != null)
+            Helper.writeAsCsv(realTable, realSeparator, csvFilename);
+    }
+
+    /**
+     * Возвращает {@code true}, если файл {@code realFilename} с температурами в двоичном формате (и файл
+     * {@code csvFilename}, если он не равен {@code null}) существует, изменён не раньше файла {@code rawFilename} с
+     * необработанными температурными данными и записан с кодированием {@code encoding} при параметрах калибровки
+     * {@code params}.
+     */
+    public static boolean isRealFileUpToDate(String rawFilename, String realFilename, String csvFilename,
+                                             RealTempsFile.Encoding encoding, double[] params) {
+        File rawFile = new File(rawFilename);
+        File realFile = new File(realFilename);
+        if (!realFile.isFile() || realFile.lastModified() < rawFile.lastModified())
+            return false;
+        if (csvFilename != null && (!new File(csvFilename).isFile() ||
+                new File(csvFilename).lastModified() < rawFile.lastModified()))
+            return false;
+        try {
+            return RealTempsFile.readEncoding(realFilename) == encoding &&
+                    Arrays.equals(RealTempsFile.readParams(realFilename), params);
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
     }
 
     /**
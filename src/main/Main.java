@@ -1,6 +1,8 @@
 package main;
 
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import figures.*;
 import figures.Point;
 import figures.Polygon;
@@ -12,6 +14,7 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
@@ -39,18 +42,6 @@ public class Main {
     // Краткие имена скриптов.
     //
 
-    /**
-     * Скрипт, извлекающий общие для всех термограмм EXIF-параметры.
-     */
-    private final static String SCRIPT_GLOBAL_PARAMS = "global_params";
-    /**
-     * Скрипт, извлекающий из всех термограмм геометрические характеристики съёмки.
-     */
-    private final static String SCRIPT_THERMOGRAMS_INFO = "thermograms_info";
-    /**
-     * Скрипт, извлекающий из всех термограмм необработанные температурные данные.
-     */
-    private final static String SCRIPT_THERMOGRAMS_RAW_TEMPERATURES = "thermograms_raw_temperatures";
     /**
      * Скрипт, копирующий GPS-координаты из термограмм в картинки с дефектами.
      */
@@ -113,6 +104,14 @@ public class Main {
      * Файл с этапами вычисления углов наклона трубы.
      */
     private final static String PIPE_ANGLES_LOG = "pipe_angles_log.txt";
+    /**
+     * Файл со сведениями о результатах предыдущего выделения дефектов.
+     */
+    private final static String DEFECTS_MANIFEST = "defects_manifest.json";
+    /**
+     * Папка с этапами вычисления углов наклона трубы, сохранёнными для каждой термограммы (см. {@link DefectsManifest}).
+     */
+    private final static String DEFECTS_MANIFEST_LOGS = "defects_manifest_logs";
 
 
     //
@@ -136,17 +135,17 @@ public class Main {
      */
     private final static String EXTENSION = ".jpg";
     /**
-     * Расширение файлов с необработанными температурами (в формате CSV).
+     * Расширение файлов с необработанными температурами (в формате PGM).
      */
     private final static String EXTENSION_RAW = ".pgm";
     /**
-     * Расширение файлов с температурами (в формате CSV).
+     * Расширение файлов с температурами (в двоичном формате, см. {@link RealTempsFile}).
      */
-    public final static String EXTENSION_REAL = ".csv";
+    public final static String EXTENSION_REAL = ".bin";
     /**
-     * Разделитель значений в файле с необработанными температурами.
+     * Расширение файлов с температурами (в формате CSV).
      */
-    private final static char SEPARATOR_RAW = ' ';
+    public final static String EXTENSION_REAL_CSV = ".csv";
     /**
      * Разделитель значений в файле с температурами.
      */
@@ -340,7 +339,7 @@ public class Main {
 
 
     public static boolean testPair(figures.Polygon<Pixel> d, figures.Polygon<Pixel> d1, figures.Polygon<Pixel> d2,
-                                   double pA1, double pA2, double[][] realTable, int resY) {
+                                   double pA1, double pA2, ThermalFrame thermalFrame, int resY) {
         Pixel centre = figures.Polygon.middle(d);
         Pixel centre1 = figures.Polygon.middle(d1);
         Pixel centre2 = figures.Polygon.middle(d2);
@@ -362,7 +361,7 @@ public class Main {
                 jj[0] - h <= centre.getJ() && centre.getJ() <= jj[1] + h))
             return false;
 
-        return detect(new Segment(centre1.toPoint(resY), centre2.toPoint(resY)), realTable);
+        return detect(new Segment(centre1.toPoint(resY), centre2.toPoint(resY)), thermalFrame);
     }
 
     /**
@@ -385,10 +384,13 @@ public class Main {
         return v + (angle1 * angle2 < 0 && abs(angle1) + abs(angle2) > 90 ? (v <= 0 ? 90 : -90) : 0);
     }
 
-    public static boolean detect(Segment segment, double[][] realTable) {
+    /**
+     * Определяет, положительны ли температуры во всех пикселях отрезка {@code segment}. Пиксели обходятся без создания
+     * объектов (см. {@link RasterLine}), обход прекращается на первом пикселе с неположительной температурой.
+     */
+    public static boolean detect(Segment segment, ThermalFrame thermalFrame) {
         Point a = segment.getA();
         Point b = segment.getB();
-        var points = new ArrayList<Point>();
 
         int maxI = max(a.getI(), b.getI());
         int minI = min(a.getI(), b.getI());
@@ -397,24 +399,14 @@ public class Main {
 
         if (a.getI() != b.getI()) {
             double[] coefs = Segment.coefs(a, b);
-            for (int t = 0; t <= max(maxI - minI, maxJ - minJ); t++) {
-                // точка, пробегающая отрезок [minI, maxI]
-                double i = minI + t * (maxI - minI + 0.) / max(maxI - minI, maxJ - minJ);
-                points.add(new Point(i, coefs[0] * i + coefs[1]));
-            }
-        } else
-            for (int j = minJ; j <= maxJ; j++)
-                points.add(new Point(a.getI(), j));
-
-        double[] temperatures = new double[points.size()];
-        for (int i = 0; i < points.size(); i++) {
-            temperatures[i] = realTable[points.get(i).getI()][points.get(i).getJ()];
-            //System.out.println(temperatures[i]);
+            // Параметр пробегает отрезок [minI, maxI].
+            return RasterLine.walk(minI, maxI, max(maxI - minI, maxJ - minJ), i -> coefs[0] * i + coefs[1],
+                    (i, j) -> thermalFrame.get(i, j) > 0);
         }
-
-        double min = Arrays.stream(temperatures).min().orElse(-1);
-
-        return min > 0;
+        for (int j = minJ; j <= maxJ; j++)
+            if (!(thermalFrame.get(a.getI(), j) > 0))
+                return false;
+        return true;
     }
 
     /**
@@ -441,11 +433,9 @@ public class Main {
      * @param numberEndPixels максимальное число пикселей, по которым рассчитывается средняя температура
      */
     public static Object[] findJump(Pixel start, double angle, double length, double tempJump, int numberEndPixels,
-                                    double[][] realTable, double height, double pixelSize, double focalLength,
+                                    ThermalFrame thermalFrame, double height, double pixelSize, double focalLength,
                                     int resX, int resY) {
 
-        List<Pixel> jumps = new ArrayList<>();
-        List<Double> temperatures = new ArrayList<>();
         int sI = start.getI();
         int sJ = start.getJ();
 
@@ -464,8 +454,6 @@ public class Main {
         int eI = end.getI();
         int eJ = end.getJ();
 
-        int jPrev = -1;
-
         if (start.equals(end)) return new Object[]{new Pixel(-2, -2), 0.};
 
         // Случай start=end рассмотрен выше, поэтому здесь start!=end и, следовательно, хотя бы один из инкрементов
@@ -492,48 +480,72 @@ public class Main {
         }
 
         // Здесь |eI-sI|>=|eJ-sJ|. Следовательно, iIncSign!=0 и sI!=eI (иначе start=end). Значит, хотя бы одна итерация
-        // состоится (и тем самым, список temperatures окажется непустым).
-        for (int i = sI + iIncSign; iIncSign > 0 ? i <= eI : i >= eI; i = i + iIncSign) {
-            int j = (int) round(AbstractPoint.linearFunction(i, new Pixel(sI, sJ), new Pixel(eI, eJ)));
-
-            double currTemp, prevTemp = -1000;
-            if (!inversion) {
-                currTemp = realTable[resY - 1 - j][i];
-                if (i != sI + iIncSign)
-                    prevTemp = realTable[resY - 1 - jPrev][i - iIncSign];
-            } else {
-                currTemp = realTable[resY - 1 - i][j];
-                if (i != sI + iIncSign)
-                    prevTemp = realTable[resY - 1 - (i - iIncSign)][jPrev];
-            }
+        // состоится (и тем самым, хотя бы одна температура будет запомнена).
+        // Пиксели обходятся без создания объектов: запоминаются только последний пиксель с температурным контрастом и
+        // температуры последних numberEndPixels пикселей (в кольцевом буфере).
+        final int fsI = sI, fsJ = sJ, feI = eI, feJ = eJ;
+        final boolean isInverted = inversion;
+        class JumpSearch implements RasterLine.PixelVisitor {
+            private final double[] endTemperatures = new double[max(numberEndPixels, 0)];
+            private int count;
+            private double prevTemp;
+            private boolean isFound;
+            private int jumpI;
+            private int jumpJ;
 
-            temperatures.add(currTemp);
-            if (i != sI + iIncSign && abs(currTemp - prevTemp) >= tempJump)
-                jumps.add(!inversion ? new Pixel(i, j) : new Pixel(j, i));
-            jPrev = j;
+            @Override
+            public boolean visit(int i, int j) {
+                double currTemp = !isInverted ? thermalFrame.getAtPixel(i, j) : thermalFrame.getAtPixel(j, i);
+                if (count > 0 && abs(currTemp - prevTemp) >= tempJump) {
+                    isFound = true;
+                    jumpI = !isInverted ? i : j;
+                    jumpJ = !isInverted ? j : i;
+                }
+                if (endTemperatures.length > 0)
+                    endTemperatures[count % endTemperatures.length] = currTemp;
+                count++;
+                prevTemp = currTemp;
+                return true;
+            }
         }
+        var search = new JumpSearch();
+        int first = sI + iIncSign;
+        RasterLine.walk(first, eI, abs(eI - first), i -> fsJ + (i - fsI) * (feJ - fsJ + 0.) / (feI - fsI), search);
 
         double avEndTemp = 0;
-        for (int i = 0; i < min(numberEndPixels, temperatures.size()); i++)
-            avEndTemp += temperatures.get(temperatures.size() - 1 - i);
-        avEndTemp = avEndTemp / min(numberEndPixels, temperatures.size());
+        int number = min(numberEndPixels, search.count);
+        for (int i = 0; i < number; i++)
+            avEndTemp += search.endTemperatures[(search.count - 1 - i) % search.endTemperatures.length];
+        avEndTemp = avEndTemp / number;
 
-        return new Object[]{jumps.size() > 0 ? jumps.get(jumps.size() - 1) : new Pixel(-1, -1), avEndTemp};
+        return new Object[]{search.isFound ? new Pixel(search.jumpI, search.jumpJ) : new Pixel(-1, -1), avEndTemp};
     }
 
     /**
-     * Конвертирует таблицу с реальными температурами {@code realTable} в список укрупнённых многоугольников.
+     * Конвертирует маску {@code binTable}, содержащую единицы в позициях с температурами из заданного интервала, в
+     * список укрупнённых многоугольников.
+     * <p>
+     * Способ построения многоугольников задаётся параметром {@code SEGMENTATION}: наращивание прямоугольников и их
+     * итеративное объединение (значение {@code RECTANGLES}) или окаймляющие прямоугольники компонент связности (значение
+     * {@code COMPONENTS}, см. {@link ConnectedComponents}).
      */
-    private static List<figures.Polygon<Point>> realTableToEnlargedPolygons(Thermogram thermogram, double[][] realTable,
-                                                                            double tMin, double tMax, int minPixelSquare,
-                                                                            int distance, figures.Polygon<Pixel> overlap,
-                                                                            int maxLength, double focalLength, double pixelSize, int resY,
-                                                                            BiPredicate<figures.Polygon<Point>, figures.Polygon<Point>> condition) {
+    private static List<figures.Polygon<Point>> binTableToEnlargedPolygons(Thermogram thermogram, BitMask binTable,
+                                                                           int minPixelSquare,
+                                                                           int distance, figures.Polygon<Pixel> overlap,
+                                                                           int maxLength, double focalLength, double pixelSize, int resY,
+                                                                           BiPredicate<figures.Polygon<Point>, figures.Polygon<Point>> condition) {
 
-        int[][] binTable = Helper.findIf(realTable, num -> num > tMin && num < tMax);
         Helper.nullifyRectangles(binTable, thermogram.getForbiddenZones(), resY);
 
-        List<figures.Rectangle<Point>> ranges = figures.Rectangle.findRectangles(binTable, maxLength, focalLength);
+        if ("COMPONENTS".equals(Property.SEGMENTATION.value()))
+            return componentsToPolygons(thermogram, binTable, minPixelSquare, distance, overlap, focalLength,
+                    pixelSize, resY);
+        if (!"RECTANGLES".equals(Property.SEGMENTATION.value()))
+            throw new IllegalArgumentException("Недопустимое значение параметра SEGMENTATION: " +
+                    Property.SEGMENTATION.value() + ".");
+
+        List<figures.Rectangle<Point>> ranges = figures.Rectangle.findRectangles(binTable, maxLength, focalLength,
+                Property.TILE_SIZE.intValue());
         ranges.removeIf(range -> range.squarePixels() < minPixelSquare);
 
         List<figures.Polygon<Point>> polygons = figures.Polygon.toPolygons(ranges, overlap, thermogram.getHeight(), focalLength,
@@ -543,7 +555,7 @@ public class Main {
             return figures.Polygon.enlargeIteratively(polygons, distance, overlap, thermogram.getName(), thermogram.getHeight(),
                     focalLength, pixelSize, resY, condition);
         } catch (Exception e) {
-            System.out.println("Проблема в Main.realTableToEnlargedPolygons(): ошибка в Polygon.enlargeIteratively().\n" +
+            System.out.println("Проблема в Main.binTableToEnlargedPolygons(): ошибка в Polygon.enlargeIteratively().\n" +
                     "Берём изначальные дефекты.\n" +
                     "Термограмма: " + thermogram.getName() + ".");
             e.printStackTrace();
@@ -552,11 +564,38 @@ public class Main {
         }
     }
 
-    private static List<Pixel> findMiddlesOfPseudoDefects(Thermogram thermogram, double[][] realTable, double pixelSize,
-                                                          int resY, double tMinPseudo, int minPixelSquare, int distance,
-                                                          int maxLength, double focalLength, figures.Polygon<Pixel> overlap,
-                                                          List<figures.Polygon<Point>> enlargedPolygons, int maxDiff, double k,
-                                                          BiPredicate<figures.Polygon<Point>, figures.Polygon<Point>> condition) {
+    /**
+     * Возвращает многоугольники, являющиеся окаймляющими прямоугольниками компонент связности маски {@code binTable}
+     * (см. {@link ConnectedComponents#find(BitMask, int)}), которые содержат не менее {@code minPixelSquare} единиц.
+     */
+    private static List<figures.Polygon<Point>> componentsToPolygons(Thermogram thermogram, BitMask binTable,
+                                                                     int minPixelSquare, int distance,
+                                                                     figures.Polygon<Pixel> overlap,
+                                                                     double focalLength, double pixelSize, int resY) {
+        ConnectedComponents components = ConnectedComponents.find(binTable, distance);
+        var boundingRectangles = new ArrayList<figures.Rectangle<Point>>();
+        for (int i = 0; i < components.size(); i++) {
+            figures.Rectangle<Point> rectangle = components.getBoundingRectangle(i);
+            // Отрезки (как и в методе Rectangle.findRectangles()) не считаются дефектами.
+            if (components.getArea(i) >= minPixelSquare &&
+                    rectangle.getLeft().getI() < rectangle.getRight().getI() &&
+                    rectangle.getLeft().getJ() < rectangle.getRight().getJ())
+                boundingRectangles.add(rectangle);
+        }
+        return figures.Polygon.toPolygons(boundingRectangles, overlap, thermogram.getHeight(), focalLength, pixelSize,
+                resY);
+    }
+
+    /**
+     * Возвращает середины псевдодефектов, соответствующих дефектам {@code enlargedPolygons}. Многоугольники
+     * псевдодефектов {@code pseudoPolygons} строятся (см.
+     * {@link #binTableToEnlargedPolygons(Thermogram, BitMask, int, int, figures.Polygon, int, double, double, int,
+     * BiPredicate)}) в отдельной задаче.
+     */
+    private static List<Pixel> findMiddlesOfPseudoDefects(Future<List<figures.Polygon<Point>>> pseudoPolygons,
+                                                          int resY, double focalLength,
+                                                          List<figures.Polygon<Point>> enlargedPolygons, int maxDiff,
+                                                          double k) {
 
         var boundingRectangles = new ArrayList<figures.Rectangle<Pixel>>();
         for (figures.Polygon<Point> p : enlargedPolygons)
@@ -564,11 +603,10 @@ public class Main {
 
         List<figures.Polygon<Point>> enlargedPolygons2;
         try {
-            enlargedPolygons2 = realTableToEnlargedPolygons(thermogram, realTable, tMinPseudo, 100, minPixelSquare,
-                    distance, overlap, maxLength, focalLength, pixelSize, resY, condition);
+            enlargedPolygons2 = pseudoPolygons.get();
         } catch (Exception e) {
             System.out.println("Проблема в Main.findMiddlesOfPseudoDefects(): " +
-                    "ошибка в Main.realTableToEnlargedPolygons() (т. е. псевдодефекты не вычисляются).\n" +
+                    "ошибка в Main.binTableToEnlargedPolygons() (т. е. псевдодефекты не вычисляются).\n" +
                     "Берём середины окаймляющих прямоугольников настоящих дефектов, а не псевдодефектов.");
             e.printStackTrace();
             System.out.println();
@@ -677,31 +715,130 @@ public class Main {
         } else return new Pixel(-10, -10);
     }
 
+    /**
+     * Возвращает угол наклона оси трубы (принадлежащий промежутку {@code [0,180)}), ближайшей к середине
+     * прямоугольника, окаймляющего многоугольник {@code polygon} (см. {@link PipeAxes}). Если осей нет, то возвращает
+     * {@code -1}.
+     */
+    private static double findPipeAngle(PipeAxes pipeAxes, figures.Polygon<Point> polygon, int num,
+                                        Thermogram thermogram, String pipeAnglesLogFilename, double focalLength,
+                                        int resY) {
+        Pixel middle = figures.Polygon.toPolygonPixel(polygon, focalLength, resY).boundingRectangle().middle();
+        int k = pipeAxes.nearest(middle);
+        if (k == -1)
+            return -1;
+        Helper.log(pipeAnglesLogFilename, "       ===  " + thermogram.getName() + ",  polygon " + num + "  ===\n");
+        Helper.log(pipeAnglesLogFilename, "Ось трубы " + (k + 1) + " из " + pipeAxes.size() + ":   pipeAngle:   " +
+                pipeAxes.angle(k) + ".\n\n\n");
+        return pipeAxes.angle(k);
+    }
+
+    /**
+     * Дописывает в файл {@code filename} с углами наклона трубы (в формате файла custom_pipe_angles.txt) углы из
+     * отображения {@code pipeAngles} для термограмм, отсутствующих в этом файле (в порядке массива
+     * {@code thermograms}). Имеющиеся в файле записи сохраняются.
+     */
+    private static void addCustomPipeAngles(String filename, Map<String, List<Double>> pipeAngles,
+                                            Thermogram[] thermograms) {
+        var entries = new ArrayList<String>();
+        var names = new HashSet<String>();
+        // Разделитель строк сохраняется таким же, как в имеющемся файле.
+        String lineSeparator = System.lineSeparator();
+        if (new File(filename).isFile())
+            try {
+                String content = Files.readString(Paths.get(filename), StandardCharsets.UTF_8);
+                if (content.contains("\r\n"))
+                    lineSeparator = "\r\n";
+                for (JsonElement e : new JsonParser().parse(content).getAsJsonArray()) {
+                    JsonObject entry = e.getAsJsonObject();
+                    names.add(entry.get("Name").getAsString());
+                    entries.add(customPipeAnglesEntry(entry.get("Name").getAsString(),
+                            entry.get("CustomPipeAngles").getAsJsonArray().toString().replace(",", ", ")));
+                }
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Ошибка чтения файла " + filename + ". Углы осей труб в него не записываются.");
+                e.printStackTrace();
+                return;
+            }
+
+        for (Thermogram thermogram : thermograms) {
+            List<Double> angles = pipeAngles.get(thermogram.getName());
+            if (angles != null && !names.contains(thermogram.getName()))
+                entries.add(customPipeAnglesEntry(thermogram.getName(), angles.stream()
+                        .map(angle -> angle == rint(angle) ? String.valueOf(angle.intValue()) : String.valueOf(angle))
+                        .collect(Collectors.joining(", ", "[", "]"))));
+        }
+
+        try {
+            Files.writeString(Paths.get(filename),
+                    ("[\n" + String.join(",\n", entries) + "\n]").replace("\n", lineSeparator), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String customPipeAnglesEntry(String name, String angles) {
+        return "  {\n    \"Name\": \"" + name + "\",\n    \"CustomPipeAngles\": " + angles + "\n  }";
+    }
+
+    /**
+     * Возвращает угол наклона трубы (принадлежащий промежутку {@code [0,180)}), перпендикулярный преобладающему
+     * направлению градиента температуры в прямоугольнике, окаймляющем многоугольник {@code polygon} (см.
+     * {@link OrientationField}). Если преобладающего направления нет, то возвращает {@code -1}.
+     */
+    private static double findPipeAngle(OrientationField orientationField, figures.Polygon<Point> polygon, int num,
+                                        Thermogram thermogram, String pipeAnglesLogFilename) {
+        int[] rows = polygon.findMinAndMax(Point::getI);
+        int[] cols = polygon.findMinAndMax(Point::getJ);
+        double pipeAngle = orientationField.pipeAngle(rows[0], cols[0], rows[1], cols[1]);
+        if (pipeAngle != -1) {
+            Helper.log(pipeAnglesLogFilename, "       ===  " + thermogram.getName() + ",  polygon " + num + "  ===\n");
+            Helper.log(pipeAnglesLogFilename, "Структурный тензор:   pipeAngle:   " + (round(pipeAngle * 100) / 100.) +
+                    ".\n\n\n");
+        }
+        return pipeAngle;
+    }
+
     private static double findPipeAngle(Pixel pixel, figures.Polygon<Point> polygon, int num, Thermogram thermogram,
                                         double diameter, double coef, double tempJump, int numberEndPixels, double dec,
-                                        double eps, int maxIter, double[][] realTable, String rawDefectsFilename,
+                                        double eps, int maxIter, ThermalFrame thermalFrame, String rawDefectsFilename,
                                         ReentrantReadWriteLock lock, String pipeAnglesLogFilename, double pixelSize,
-                                        double focalLength, int resX, int resY) {
+                                        double focalLength, int resX, int resY, RayFan rays) {
+        // Этапы вычисления накапливаются в памяти и записываются в файл один раз, а не построчно.
+        var log = new StringBuilder();
+        try {
+            return findPipeAngle(pixel, polygon, num, thermogram, diameter, coef, tempJump, numberEndPixels, dec, eps,
+                    maxIter, thermalFrame, rawDefectsFilename, lock, log, pixelSize, focalLength, resX, resY, rays);
+        } finally {
+            Helper.append(pipeAnglesLogFilename, log.toString());
+        }
+    }
+
+    private static double findPipeAngle(Pixel pixel, figures.Polygon<Point> polygon, int num, Thermogram thermogram,
+                                        double diameter, double coef, double tempJump, int numberEndPixels, double dec,
+                                        double eps, int maxIter, ThermalFrame thermalFrame, String rawDefectsFilename,
+                                        ReentrantReadWriteLock lock, StringBuilder log, double pixelSize,
+                                        double focalLength, int resX, int resY, RayFan rays) {
 
         figures.Polygon<Pixel> polygon1 = figures.Polygon.toPolygonPixel(polygon, focalLength, resY);
         double d = Thermogram.earthToDiscreteMatrix(diameter, thermogram.getHeight(), pixelSize, focalLength);
         int w = polygon1.width();
         int h = polygon1.height();
-        Helper.log(pipeAnglesLogFilename, "       ===  " + thermogram.getName() + ",  polygon " + num + "  ===\n");
-        Helper.log(pipeAnglesLogFilename, "Polygon (" + w + "x" + h + "): " + polygon1 + ".\n");
+        Helper.log(log, "       ===  " + thermogram.getName() + ",  polygon " + num + "  ===\n");
+        Helper.log(log, "Polygon (" + w + "x" + h + "): " + polygon1 + ".\n");
 
         int eps1 = 2;
         int eps2 = 4;
 
         /*// Многоугольник polygon является отчётливо горизонтальным (относительно термограммы).
         if (w >= d + eps2 && ((d - eps1 <= h && h <= d) || (h > d && w > h))) {
-            Helper.log(pipeAnglesLogFilename, "Многоугольник является отчётливо горизонтальным => pipeAngle=0.\n\n\n");
+            Helper.log(log, "Многоугольник является отчётливо горизонтальным => pipeAngle=0.\n\n\n");
             return 0;
         }
 
         // Многоугольник polygon является отчётливо вертикальным (относительно термограммы).
         if (h >= d + eps2 && ((d - eps1 <= w && w <= d) || (w > d && h > w))) {
-            Helper.log(pipeAnglesLogFilename, "Многоугольник является отчётливо вертикальным => pipeAngle=90.\n\n\n");
+            Helper.log(log, "Многоугольник является отчётливо вертикальным => pipeAngle=90.\n\n\n");
             return 90;
         }
 
@@ -709,58 +846,19 @@ public class Main {
                 2 * d, 1.5 * d);
         if (res != -1) return res;*/
 
-        // При другом l алгоритм работает некорректно, но можно адаптировать его для произвольного l, кратного n(=8).
-        int l = 8;
-        double[] angles = new double[l];
-        // 0, 45, 90, 135, 180, -135, -90, -45 (при l=8)
-        for (int i = 0; i < l; i++)
-            angles[i] = i * 360. / l - (i * 360 / l <= 180 ? 0 : 360);
-
-        // Круг разделён на 8 частей координатными осями и биссектрисами координатных четвертей. Полученные точки
-        // пересечения нумеруются от 0, начиная с верхней точки, по часовой стрелке. Круг также разделён на l углов;
-        // точке с номером i соответствует угол с номером i*l/8.
-        //
-        // Рассматриваются 4 диаметра, которые соединяют точки 0 и 4,... , 3 и 7.
-        // С этими диаметрами связаны углы их наклона.
-        //
-        // Рассматриваются 8 почти-диаметров (т. е. ломаных, состоящих из двух радиусов, заканчивающихся в вышеописанных
-        // точках, угол между которыми равен 135).
-        // С этими почти-диаметрами связаны углы наклона прямых, образующих углы 22.5 с составляющими их радиусами.
-        //
-        // Углы наклона отсчитываются от положительного направления оси c'x' против часовой стрелки и принадлежат
-        // промежутку (-90,90].
-        int n = 8;        // число частей, на которые делим круг
-        int q = l / n;    // число углов, приходящихся на 1/n часть круга
+        // Лучи, диаметры и почти-диаметры, а также множества индексов лучей, лежащих справа и слева от диаметров, см.
+        // в описании класса RayDirections.
+        RayDirections directions = rays.getDirections();
+        double[] angles = directions.getAngles();
+        int l = angles.length;
         int half = l / 2; // разность номеров диаметрально противоположных углов
-        Point[] diameters = new Point[n / 2];
-        double[] diameterAngles = new double[n / 2];
-        for (int i = 0; i < n / 2; i++) {
-            diameters[i] = new Point(i * q, i * q + half);
-            diameterAngles[i] = 90 - 45 * i;
-        }
-        Point[] almostDiameters = new Point[n];
-        double[] almostDiameterAngles = new double[n];
-        for (int i = 0; i < n; i++) {
-            almostDiameters[i] = new Point(i * q, (i + 1) * q + half - ((i + 1) * q + half < l ? 0 : l));
-            double tmp = (90 + 45) / 2. - 45 * i;
-            almostDiameterAngles[i] = tmp + (tmp <= -90 ? 180 : 0);
-        }
-
-        // Рассматривается half диаметров, чьи углы наклона, отсчитываемые относительно положительного направления оси
-        // c'y' по часовой стрелке, изменяются от angles[0] до angles[half-1].
-        //
-        // Для 0-го диаметра right[0][] - множество индексов углов из массива angles, лежащих справа от этого диаметра,
-        // а left[0][] - слева. При увеличении номера диаметра, диаметр поворачивается по часовой стрелке, и вслед за
-        // ним также поворачиваются эти множества индексов.
-        int[][] right = new int[half][half - 1];
-        int[][] left = new int[half][half - 1];
-        for (int i = 0; i < half; i++)
-            for (int j = 0; j < half - 1; j++) {
-                right[i][j] = i + j + 1;
-                left[i][j] = right[i][j] + half - (right[i][j] + half < l ? 0 : l);
-            }
+        Point[] diameters = directions.getDiameters();
+        double[] diameterAngles = directions.getDiameterAngles();
+        Point[] almostDiameters = directions.getAlmostDiameters();
+        double[] almostDiameterAngles = directions.getAlmostDiameterAngles();
+        int[][] right = directions.getRight();
+        int[][] left = directions.getLeft();
 
-        Object[][] jumps = new Object[l][];
         Pixel[] jumpPixel = new Pixel[l];
         double[] avEndTemp = new double[l];
         var anglesWithNoJumpPixel = new ArrayList<Integer>();
@@ -769,15 +867,15 @@ public class Main {
         int i1 = -1, i2 = -1;
         double pipeAngle = -1000;
 
-        Helper.log(pipeAnglesLogFilename, "");
+        Helper.log(log, "");
 
         while (iter < maxIter) {
             if (pixel.equals(new Pixel(-10, -10))) {
-                Helper.log(pipeAnglesLogFilename, "--- Сдвиг pixel невозможен. ---\n");
+                Helper.log(log, "--- Сдвиг pixel невозможен. ---\n");
                 break;
             }
             iter++;
-            Helper.log(pipeAnglesLogFilename, "            === iter:  " + iter + " ===\n");
+            Helper.log(log, "            === iter:  " + iter + " ===\n");
 
             double inclination1, inclination2;
             double inclination1Old, inclination2Old;
@@ -792,11 +890,8 @@ public class Main {
             anglesWithNoJumpPixel.clear();
             var anglesWithNoAvEndTemp = new ArrayList<Integer>();
 
+            rays.castAll(coef * diameter, pixel, tempJump, numberEndPixels, thermalFrame, jumpPixel, avEndTemp);
             for (int i = 0; i < l; i++) {
-                jumps[i] = findJump(pixel, angles[i], coef * diameter, tempJump, numberEndPixels,
-                        realTable, thermogram.getHeight(), pixelSize, focalLength, resX, resY);
-                jumpPixel[i] = (Pixel) jumps[i][0];
-                avEndTemp[i] = (double) jumps[i][1];
                 if (jumpPixel[i].equals(new Pixel(-1, -1)) || jumpPixel[i].equals(new Pixel(-2, -2)))
                     anglesWithNoJumpPixel.add(i);
                 if (jumpPixel[i].equals(new Pixel(-2, -2)))
@@ -820,18 +915,18 @@ public class Main {
                 i2 = max(tmp, i2);
             } else {
                 if (iter > 1) {
-                    Helper.log(pipeAnglesLogFilename, "Значения i1, i2 остаются с предыдущей итерации, т. к. не " +
+                    Helper.log(log, "Значения i1, i2 остаются с предыдущей итерации, т. к. не " +
                             "могут быть корректно вычислены из-за того, что anglesWithNoAvEndTemp.size>l-2." + "\n");
                 } else {
                     i1 = 0;
                     i2 = half;
-                    Helper.log(pipeAnglesLogFilename, "В качестве значений i1, i2 берутся " + i1 + ", " + i2 + ", " +
+                    Helper.log(log, "В качестве значений i1, i2 берутся " + i1 + ", " + i2 + ", " +
                             "т. к. не могут быть корректно вычислены из-за того, что anglesWithNoAvEndTemp.size>l-2, " +
                             "и итерация 1-я." + "\n");
                 }
             }
 
-            Helper.log(pipeAnglesLogFilename, "aMaxs:   " + angles[i1] + "   " + angles[i2] + "\n");
+            Helper.log(log, "aMaxs:   " + angles[i1] + "   " + angles[i2] + "\n");
 
             // Разделяем все индексы углов, за исключением индексов i1 и i2, на две (непустые) части: range1 и range2.
 
@@ -860,16 +955,16 @@ public class Main {
                         range2.add(k);
                 }
 
-            Helper.log(pipeAnglesLogFilename, "ranges:   " + Arrays.toString(range1.toArray()) + "   " +
+            Helper.log(log, "ranges:   " + Arrays.toString(range1.toArray()) + "   " +
                     Arrays.toString(range2.toArray()) + "\n");
 
             var range1Corr = new ArrayList<>(range1);
             var range2Corr = new ArrayList<>(range2);
 
             if (range1Corr.removeAll(anglesWithNoJumpPixel))
-                Helper.log(pipeAnglesLogFilename, "range1Corr:   " + range1Corr);
+                Helper.log(log, "range1Corr:   " + range1Corr);
             if (range2Corr.removeAll(anglesWithNoJumpPixel))
-                Helper.log(pipeAnglesLogFilename, "range2Corr:   " + range2Corr);
+                Helper.log(log, "range2Corr:   " + range2Corr);
 
             var sr1 = new SimpleRegression();
             var sr2 = new SimpleRegression();
@@ -879,7 +974,7 @@ public class Main {
             for (int i : range2Corr)
                 sr2.addData(jumpPixel[i].getI(), jumpPixel[i].getJ());
 
-            Helper.log(pipeAnglesLogFilename, "slopes:   " + sr1.getSlope() + "   " + sr2.getSlope() + "\n");
+            Helper.log(log, "slopes:   " + sr1.getSlope() + "   " + sr2.getSlope() + "\n");
 
             // inclination1 (inclination2) - угол наклона прямой, аппроксимирующей точки массива jumpPixel, чьи индексы
             // прнадлежат списку range1Corr (range2Corr). Сначала принадлежит интервалу (-90,90) или равен NaN, потом
@@ -908,11 +1003,11 @@ public class Main {
                         90 : inclination2);
 
             if (Helper.compare(inclination1, inclination1Old) && Helper.compare(inclination2, inclination2Old))
-                Helper.log(pipeAnglesLogFilename, "inclinations:   " + inclination1 + "   " + inclination2 + "\n");
+                Helper.log(log, "inclinations:   " + inclination1 + "   " + inclination2 + "\n");
             else {
-                Helper.log(pipeAnglesLogFilename, "inclinations (initial):   " + inclination1Old + "   " +
+                Helper.log(log, "inclinations (initial):   " + inclination1Old + "   " +
                         inclination2Old);
-                Helper.log(pipeAnglesLogFilename, "inclinations (after change):   " + inclination1 + "   " +
+                Helper.log(log, "inclinations (after change):   " + inclination1 + "   " +
                         inclination2 + "\n");
             }
 
@@ -929,7 +1024,7 @@ public class Main {
                 pipeAngle = inclination1;
             else if (range1Corr.size() < 2) {
                 pipeAngle = 90; // Эту ситуацию можно обрабатывать более точно, например, сдвигом или изм. длины.
-                Helper.log(pipeAnglesLogFilename, "В качестве pipeAngle берётся 90, т. к. range1Corr.size," +
+                Helper.log(log, "В качестве pipeAngle берётся 90, т. к. range1Corr.size," +
                         "range2Corr.size<2.\n");
             } else {
                 double v = (inclination1 + inclination2) / 2;
@@ -945,23 +1040,23 @@ public class Main {
             pipeAngle = pipeAngle + (pipeAngle < 0 ? 180 : 0);
 
             if (pipeAngle == pipeAngleOld) {
-                Helper.log(pipeAnglesLogFilename, "============================");
-                Helper.log(pipeAnglesLogFilename, "=   " + (round(pipeAngle * 100) / 100.) + "   (pipeAngle)");
+                Helper.log(log, "============================");
+                Helper.log(log, "=   " + (round(pipeAngle * 100) / 100.) + "   (pipeAngle)");
             } else {
-                Helper.log(pipeAnglesLogFilename, "    " + (round(pipeAngleOld * 100) / 100.) +
+                Helper.log(log, "    " + (round(pipeAngleOld * 100) / 100.) +
                         "   (pipeAngle (initial))");
-                Helper.log(pipeAnglesLogFilename, "============================");
-                Helper.log(pipeAnglesLogFilename, "=   " + (round(pipeAngle * 100) / 100.) +
+                Helper.log(log, "============================");
+                Helper.log(log, "=   " + (round(pipeAngle * 100) / 100.) +
                         "   (pipeAngle (after change))");
             }
-            Helper.log(pipeAnglesLogFilename, "============================\n");
+            Helper.log(log, "============================\n");
 
             String standardDirection = "";
             double standardAngle = -1000;
             String standardDirectionName = "";
 
             int dInd = -1, aDInd = -1;
-            for (int i = 0; i < n / 2; i++)
+            for (int i = 0; i < diameters.length; i++)
                 if (new Point(i1, i2).equals(diameters[i])) {
                     dInd = i;
                     standardDirection = diameters[dInd].getI() + "-" + diameters[dInd].getJ();
@@ -970,7 +1065,7 @@ public class Main {
                     break;
                 }
             if (dInd == -1)
-                for (int i = 0; i < n; i++)
+                for (int i = 0; i < almostDiameters.length; i++)
                     if (new Point(i1, i2).equals(almostDiameters[i]) || new Point(i2, i1).equals(almostDiameters[i])) {
                         aDInd = i;
                         standardDirection = almostDiameters[aDInd].getI() + "-" + almostDiameters[aDInd].getJ();
@@ -989,53 +1084,55 @@ public class Main {
             if ((dInd != -1 || aDInd != -1) && !isCloseToStandardDirection) {
                 if (iter < maxIter) {
                     coef *= dec;
-                    Helper.log(pipeAnglesLogFilename, "Эталонное направление:   " + standardDirection +
+                    Helper.log(log, "Эталонное направление:   " + standardDirection +
                             " (" + standardDirectionName + "),   эталонный угол:   " + standardAngle + ",   " +
                             "pipeAngle:   " + (round(pipeAngle * 100) / 100.) + ".");
-                    Helper.log(pipeAnglesLogFilename, "--- Уменьшение coef, т. к. pipeAngle не соответствует " +
+                    Helper.log(log, "--- Уменьшение coef, т. к. pipeAngle не соответствует " +
                             "эталонному углу. ---\n\n");
                 } else {
                     pipeAngle = standardAngle + (standardAngle < 0 ? 180 : 0);
-                    Helper.log(pipeAnglesLogFilename, "--- Итерации исчерпаны, в качестве pipeAngle берём угол, " +
+                    Helper.log(log, "--- Итерации исчерпаны, в качестве pipeAngle берём угол, " +
                             "соответствующий эталонному направлению " + standardDirection +
                             " (" + standardDirectionName + "):   " + standardAngle + ".\n\n");
                 }
             }
             // Эталонное направление не найдено или, в противном случае, угол pipeAngle корректен.
             else {
-                // i1 и i2 - соседние или отличаются на 2 (это при l=8 равносильно отсутствию эталонного направления).
-                if ((abs(i1 - i2) == 1 || (i1 == 0 && i2 == l - 1)) ||
-                        (abs(i1 - i2) == 2 || (i1 == 0 && i2 == l - 2) || (i1 == 1 && i2 == l - 1))) {
+                // Эталонное направление отсутствует (при l=8 это равносильно тому, что i1 и i2 - соседние или
+                // отличаются на 2).
+                if (dInd == -1 && aDInd == -1) {
 
-                    Helper.log(pipeAnglesLogFilename, "Эталонное направление отсутствует.");
-                    Helper.log(pipeAnglesLogFilename, "--- Cдвиг и уменьшение coef. ---");
+                    Helper.log(log, "Эталонное направление отсутствует.");
+                    Helper.log(log, "--- Cдвиг и уменьшение coef. ---");
                     coef *= dec;
                     Pixel shiftedPixel = shiftPixel(pixel, right, left, avEndTemp, anglesWithNoAvEndTemp, resX, resY);
-                    Helper.log(pipeAnglesLogFilename, pixel + "  ->  " + shiftedPixel + "\n\n");
+                    Helper.log(log, pixel + "  ->  " + shiftedPixel + "\n\n");
                     pixel = shiftedPixel;
                 }
-                // i1 и i2 - отличаются более чем на 2 (это при l=8 равносильно наличию эталонного направления).
+                // Эталонное направление найдено (при l=8 это равносильно тому, что i1 и i2 отличаются более чем на
+                // 2).
                 else {
-                    Helper.log(pipeAnglesLogFilename, "Эталонное направление:   " + standardDirection +
+                    Helper.log(log, "Эталонное направление:   " + standardDirection +
                             " (" + standardDirectionName + "),   эталонный угол:   " + standardAngle + ",   " +
                             "pipeAngle:   " + (round(pipeAngle * 100) / 100.) + ".");
-                    Helper.log(pipeAnglesLogFilename, "--- Прекращение итераций, т. к. pipeAngle соответствует " +
+                    Helper.log(log, "--- Прекращение итераций, т. к. pipeAngle соответствует " +
                             "эталонному углу. ---\n\n");
                     break;
                 }
             }
         }
 
+        for (int i = 0; i < l; i++)
+            Helper.log(log, String.format("%1$6s", angles[i]) + "  " +
+                    String.format("%1$5s", round(avEndTemp[i] * 10) / 10.) + "  " + jumpPixel[i]);
+
         synchronized (Main.class) {
             try {
                 BufferedImage image = ImageIO.read(new File(rawDefectsFilename));
 
-                for (int i = 0; i < l; i++) {
-                    Helper.log(pipeAnglesLogFilename, String.format("%1$6s", angles[i]) + "  " +
-                            String.format("%1$5s", round(avEndTemp[i] * 10) / 10.) + "  " + jumpPixel[i]);
+                for (int i = 0; i < l; i++)
                     if (!anglesWithNoJumpPixel.contains(i))
                         new Segment(pixel.toPoint(resY), jumpPixel[i].toPoint(resY)).draw(image, Color.BLACK);
-                }
 
                 ImageIO.write(image, "jpg", new File(rawDefectsFilename));
             } catch (IOException e) {
@@ -1043,7 +1140,7 @@ public class Main {
             }
         }
 
-        Helper.log(pipeAnglesLogFilename, "\n\n");
+        Helper.log(log, "\n\n");
         return pipeAngle;
     }
 
@@ -1110,11 +1207,13 @@ public class Main {
 
     private static Object[] defects(Thermogram thermogram, figures.Polygon<Pixel> overlap, double tMin, double tMax,
                                     int minPixelSquare, double diameter, double[] params, String thermogramFilename,
-                                    String rawDefectsFilename, String realTempsFilename, char separatorReal,
+                                    String rawDefectsFilename, RawFrame rawFrame, ThermalFrame storedThermalFrame,
+                                    double[] exifParams,
                                     double pixelSize, int maxLength, double focalLength, int resX, int resY,
                                     String pipeAnglesLogFilename, double minIntersectionSquare,
                                     BiPredicate<figures.Polygon<Point>, figures.Polygon<Point>> condition,
                                     BiFunction<Double, List<Double>, Double> function, List<Double> customPipeAngles,
+                                    Map<String, List<Double>> detectedPipeAngles, RayDirections rayDirections,
                                     ExecutorService executor)
             throws IOException {
 
@@ -1129,9 +1228,19 @@ public class Main {
         double eps = params[8];
         int maxIter = (int) params[9];
 
-        double[][] realTable = Helper.extractTable(realTempsFilename, separatorReal);
+        // Маски дефектов и псевдодефектов строятся за один просмотр кадра. Если доступны необработанные температурные
+        // данные, то маски строятся по ним, без вычисления температур.
+        double[][] bands = new double[][]{{tMin, tMax}, {tMinPseudo, 100}};
+        BitMask[] binTables = rawFrame != null ?
+                Helper.findIf(rawFrame, bands, exifParams) :
+                Helper.findIf(storedThermalFrame, bands);
+
+        // Многоугольники псевдодефектов строятся параллельно с многоугольниками дефектов.
+        Future<List<figures.Polygon<Point>>> pseudoPolygons = executor.submit(() -> binTableToEnlargedPolygons(
+                thermogram, binTables[1], minPixelSquare, distance, overlap, maxLength, focalLength, pixelSize, resY,
+                condition));
 
-        List<figures.Polygon<Point>> enlargedPolygons = realTableToEnlargedPolygons(thermogram, realTable, tMin, tMax,
+        List<figures.Polygon<Point>> enlargedPolygons = binTableToEnlargedPolygons(thermogram, binTables[0],
                 minPixelSquare, distance, overlap, maxLength, focalLength, pixelSize, resY, condition);
 
         figures.Polygon.drawPolygons(enlargedPolygons, figures.Polygon.toPolygonPoint(overlap, focalLength, resY),
@@ -1142,8 +1251,35 @@ public class Main {
         figures.Polygon<Pixel> thermogramPolygon = new figures.Rectangle<>(new Pixel(0, 0), new Pixel(resX - 1, resY - 1))
                 .toPolygon();
 
-        List<Pixel> middles = findMiddlesOfPseudoDefects(thermogram, realTable, pixelSize, resY, tMinPseudo,
-                minPixelSquare, distance, maxLength, focalLength, overlap, enlargedPolygons, maxDiff, k, condition);
+        List<Pixel> middles = findMiddlesOfPseudoDefects(pseudoPolygons, resY, focalLength, enlargedPolygons, maxDiff,
+                k);
+
+        // Температуры нужны только для определения углов наклона трубы, поэтому вычисляются лишь в тех пикселях, к
+        // которым происходит обращение.
+        ThermalFrame thermalFrame = storedThermalFrame != null ?
+                storedThermalFrame : ThermalFrame.of(rawFrame, exifParams);
+
+        // Лучи одного направления и одной длины, исходящие из разных пикселей, отличаются только сдвигом, поэтому их
+        // шаблоны строятся один раз для всего кадра.
+        var rays = new RayFan(rayDirections, thermogram.getHeight(), pixelSize, focalLength, resX, resY);
+
+        String estimator = Property.PIPE_ANGLE_ESTIMATOR.value();
+        if (!"JUMPS".equals(estimator) && !"STRUCTURE_TENSOR".equals(estimator) && !"HOUGH".equals(estimator))
+            throw new IllegalArgumentException("Недопустимое значение параметра PIPE_ANGLE_ESTIMATOR: " + estimator +
+                    ".");
+        OrientationField orientationField = "STRUCTURE_TENSOR".equals(estimator) ?
+                OrientationField.of(thermalFrame) : null;
+        // Две границы одной трубы должны давать одну ось, поэтому прямые подавляются на расстоянии двух диаметров.
+        PipeAxes pipeAxes = "HOUGH".equals(estimator) ?
+                PipeAxes.find(thermalFrame, thermogram.getForbiddenZones(), tempJump, Property.HOUGH_MAX_AXES.intValue(),
+                        Property.HOUGH_MIN_VOTES.intValue(), 2 * diameterPixel) : null;
+
+        // Если для термограммы нет углов наклона трубы в файле custom_pipe_angles.txt, то углы найденных осей
+        // запоминаются и используются вместо углов по умолчанию.
+        boolean useAxes = pipeAxes != null && pipeAxes.size() > 0 && detectedPipeAngles != null;
+        List<Double> snapAngles = useAxes ? pipeAxes.getAngles() : customPipeAngles;
+        if (useAxes)
+            detectedPipeAngles.put(thermogram.getName(), snapAngles);
 
         String[][] tmpFiles = Helper.createTmpFiles(
                 IntStream.range(0, enlargedPolygons.size())
@@ -1159,10 +1295,15 @@ public class Main {
             futures[i] = executor.submit(() -> {
                 Thread.currentThread().setName("Processing defect " + (ii + 1) + ": " + enlargedPolygons.get(ii) + ", " +
                         "thermogram: " + thermogram.getName());
-                double pipeAngle = findPipeAngle(middles.get(ii), enlargedPolygons.get(ii), ii + 1, thermogram,
-                        diameter, coef, tempJump, numberEndPixels, dec, eps, maxIter, realTable, rawDefectsFilename,
-                        lock, tmpFiles[0][ii + 1], pixelSize, focalLength, resX, resY);
-                pipeAngles.set(ii, function != null ? function.apply(pipeAngle, customPipeAngles) : pipeAngle);
+                double pipeAngle = orientationField != null ? findPipeAngle(orientationField,
+                        enlargedPolygons.get(ii), ii + 1, thermogram, tmpFiles[0][ii + 1]) :
+                        (pipeAxes != null ? findPipeAngle(pipeAxes, enlargedPolygons.get(ii), ii + 1, thermogram,
+                                tmpFiles[0][ii + 1], focalLength, resY) : -1);
+                if (pipeAngle == -1)
+                    pipeAngle = findPipeAngle(middles.get(ii), enlargedPolygons.get(ii), ii + 1, thermogram,
+                            diameter, coef, tempJump, numberEndPixels, dec, eps, maxIter, thermalFrame,
+                            rawDefectsFilename, lock, tmpFiles[0][ii + 1], pixelSize, focalLength, resX, resY, rays);
+                pipeAngles.set(ii, function != null ? function.apply(pipeAngle, snapAngles) : pipeAngle);
             });
         }
         for (Future f : futures) {
@@ -1210,7 +1351,7 @@ public class Main {
                         } else if (Helper.close(pipeAngles.get(i), pipeAngles.get(kk), 45) &&
                                 Helper.close(pipeAngles.get(i), pipeAngles.get(ll), 45)) {
                         } else if (testPair(defects.get(i), defects.get(kk), defects.get(ll),
-                                pipeAngles.get(kk), pipeAngles.get(ll), realTable, resY)) {
+                                pipeAngles.get(kk), pipeAngles.get(ll), thermalFrame, resY)) {
 
                             double pipeAngle = bisectorInclination(
                                     pipeAngles.get(kk) + (pipeAngles.get(kk) > 90 ? -180 : 0),
@@ -1309,30 +1450,267 @@ public class Main {
         return o;
     }
 
+    /**
+     * Возвращает термограммы из папки {@code DIR_THERMOGRAMS}, упорядоченные по названию. Если папку не удалось
+     * прочитать, то возвращается пустой массив.
+     */
+    private static File[] listThermograms() {
+        File[] files = new File(Property.DIR_THERMOGRAMS.value()).listFiles(File::isFile);
+        if (files == null) {
+            System.out.println("Ошибка чтения папки " + Property.DIR_THERMOGRAMS.value() + ". Термограммы не " +
+                    "обрабатываются.");
+            return new File[0];
+        }
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        return files;
+    }
+
+    /**
+     * Извлекает общие для всех термограмм EXIF-параметры из первой термограммы из папки {@code DIR_THERMOGRAMS} (см.
+     * {@link ThermogramMetadata}) и записывает их в файл {@code GLOBAL_PARAMS} в формате JSON.
+     */
     public static void actionGlobalParams() {
-        Helper.run(DIR_CURRENT, SCRIPT_GLOBAL_PARAMS + SCRIPT_EXTENSION, OS);
+        File[] files = listThermograms();
+        if (files.length == 0)
+            return;
+        File outputDir = new File(DIR_CURRENT, Property.SUBDIR_OUTPUT.value());
+        outputDir.mkdirs();
+        try {
+            ThermogramMetadata metadata = ThermogramMetadata.read(
+                    Helper.filename(Property.DIR_THERMOGRAMS.value(), files[0].getName()), true);
+            Files.writeString(Paths.get(outputDir.getPath(), GLOBAL_PARAMS), metadata.toJson("") + "\n");
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+        }
     }
 
+    /**
+     * Параллельно извлекает из всех термограмм из папки {@code DIR_THERMOGRAMS} геометрические характеристики съёмки
+     * (см. {@link ThermogramMetadata}) и записывает их в файл {@code THERMOGRAMS_INFO} в виде массива JSON,
+     * упорядоченного по дате съёмки.
+     */
     public static void actionThermogramsInfo() {
-        Helper.run(DIR_CURRENT, SCRIPT_THERMOGRAMS_INFO + SCRIPT_EXTENSION, OS);
+        File[] files = listThermograms();
+        File outputDir = new File(DIR_CURRENT, Property.SUBDIR_OUTPUT.value());
+        outputDir.mkdirs();
+
+        var tasks = new ArrayList<Callable<ThermogramMetadata>>();
+        for (File file : files)
+            tasks.add(() -> ThermogramMetadata.read(
+                    Helper.filename(Property.DIR_THERMOGRAMS.value(), file.getName()), false));
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        var metadataList = new ArrayList<ThermogramMetadata>();
+        try {
+            for (Future<ThermogramMetadata> future : executor.invokeAll(tasks))
+                try {
+                    metadataList.add(future.get());
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        executor.shutdown();
+
+        // Сортировка устойчива, поэтому термограммы с одинаковой датой съёмки (или без неё) остаются упорядоченными по
+        // названию. Термограммы без даты съёмки помещаются в конец.
+        metadataList.sort(Comparator.comparing(ThermogramMetadata::getDateTimeOriginal,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+        try {
+            Files.writeString(Paths.get(outputDir.getPath(), THERMOGRAMS_INFO), "[\n  " + metadataList.stream()
+                    .map(metadata -> metadata.toJson("  "))
+                    .collect(Collectors.joining(",\n  ")) + "\n]\n");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
+    /**
+     * Параллельно извлекает из всех термограмм из папки {@code DIR_THERMOGRAMS} необработанные температурные данные
+     * (см. {@link RawThermalImage#read(String)}) и записывает их в файлы в формате PGM в папке
+     * {@code SUBDIR_RAW_TEMPS}.
+     */
     public static void actionThermogramsRawTemperatures() {
-        Helper.run(DIR_CURRENT, SCRIPT_THERMOGRAMS_RAW_TEMPERATURES + SCRIPT_EXTENSION, OS);
+        File[] files = listThermograms();
+        File rawTempsDir = new File(DIR_CURRENT, Property.SUBDIR_RAW_TEMPS.value());
+        rawTempsDir.mkdirs();
+        boolean binary = !"P2".equals(Property.RAW_TEMPS_FORMAT.value());
+
+        var tasks = new ArrayList<Callable<String>>();
+        for (File file : files)
+            tasks.add(() -> {
+                String thermogramName = file.getName().substring(0, file.getName().indexOf('.'));
+                try {
+                    Pgm.write(RawThermalImage.read(file.getPath()), Helper.filename(rawTempsDir.getPath(),
+                            thermogramName + Property.POSTFIX_RAW_TEMPS.value() + EXTENSION_RAW), binary);
+                    return null;
+                } catch (IOException | IllegalArgumentException e) {
+                    e.printStackTrace();
+                    return file.getName();
+                }
+            });
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        var unprocessedThermograms = new ArrayList<String>();
+        try {
+            for (Future<String> future : executor.invokeAll(tasks))
+                if (future.get() != null)
+                    unprocessedThermograms.add(future.get());
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+        }
+        executor.shutdown();
+
+        if (unprocessedThermograms.size() == 0)
+            System.out.println("Все термограммы обработаны.");
+        else {
+            System.out.println("Следующие термограммы не обработаны:\n");
+            for (String name : unprocessedThermograms)
+                System.out.println(name + "\n");
+        }
     }
 
+    /**
+     * Для каждой термограммы из папки {@code DIR_THERMOGRAMS} конвертирует файл с необработанными температурными данными
+     * в файл с температурами (см. {@link Helper#rawFileToRealFile(String, String, String, int, int,
+     * RealTempsFile.Encoding, char, double[])}).
+     * <p>
+     * Файлы конвертируются параллельно в {@code CSV_THREADS} потоках. Чтобы объём используемой памяти не зависел от
+     * числа термограмм, одновременно выполняется не более {@code 2*CSV_THREADS} задач: следующая задача создаётся только
+     * после завершения одной из предыдущих. Термограммы, файлы с температурами которых актуальны (см.
+     * {@link Helper#isRealFileUpToDate(String, String, String, RealTempsFile.Encoding, double[])}), пропускаются. Для
+     * каждой термограммы выводится время конвертации.
+     */
     public static void actionCsv() {
-        File[] files = new File(Property.DIR_THERMOGRAMS.value()).listFiles();
-        String[] thermogramsNames = new String[files.length];
-        for (int i = 0; i < files.length; i++)
-            thermogramsNames[i] = files[i].getName().substring(0, files[i].getName().indexOf('.'));
-        for (String thermogramName : thermogramsNames)
-            Helper.rawFileToRealFile(DIR_CURRENT + "/" + Property.SUBDIR_RAW_TEMPS.value() +
-                            "/" + thermogramName + Property.POSTFIX_RAW_TEMPS.value() + EXTENSION_RAW,
-                    DIR_CURRENT + "/" + Property.SUBDIR_REAL_TEMPS.value() +
-                            "/" + thermogramName + Property.POSTFIX_REAL_TEMPS.value() + EXTENSION_REAL,
-                    ExifParam.RES_Y.intValue(), ExifParam.RES_X.intValue(), SEPARATOR_RAW, SEPARATOR_REAL,
-                    Arrays.copyOfRange(ExifParam.readValues(), 1, ExifParam.readValues().length));
+        File[] files = listThermograms();
+        File realTempsDir = new File(DIR_CURRENT, Property.SUBDIR_REAL_TEMPS.value());
+        realTempsDir.mkdirs();
+        double[] exifParams = Arrays.copyOfRange(ExifParam.readValues(), 1, ExifParam.readValues().length);
+        RealTempsFile.Encoding encoding = RealTempsFile.Encoding.valueOf(Property.REAL_TEMPS_ENCODING.value());
+        int threads = Property.CSV_THREADS.intValue() > 0 ? Property.CSV_THREADS.intValue() :
+                Runtime.getRuntime().availableProcessors();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        var completionService = new ExecutorCompletionService<String>(executor);
+        int maxTasks = 2 * threads;
+        int tasks = 0;
+        int skipped = 0;
+        var unprocessedThermograms = new ArrayList<String>();
+        long start = System.nanoTime();
+        try {
+            for (File file : files) {
+                String thermogramName = file.getName().substring(0, file.getName().indexOf('.'));
+                String rawFilename = Helper.filename(DIR_CURRENT, Property.SUBDIR_RAW_TEMPS.value(),
+                        thermogramName + Property.POSTFIX_RAW_TEMPS.value() + EXTENSION_RAW);
+                String realFilename = Helper.filename(realTempsDir.getPath(),
+                        thermogramName + Property.POSTFIX_REAL_TEMPS.value() + EXTENSION_REAL);
+                String csvFilename = Property.REAL_TEMPS_CSV.booleanValue() ? Helper.filename(realTempsDir.getPath(),
+                        thermogramName + Property.POSTFIX_REAL_TEMPS.value() + EXTENSION_REAL_CSV) : null;
+
+                if (Helper.isRealFileUpToDate(rawFilename, realFilename, csvFilename, encoding, exifParams)) {
+                    System.out.println(thermogramName + ": файл актуален, пропущен.");
+                    skipped++;
+                    continue;
+                }
+                if (tasks == maxTasks) {
+                    collectCsvResult(completionService.take(), unprocessedThermograms);
+                    tasks--;
+                }
+                completionService.submit(() -> {
+                    long frameStart = System.nanoTime();
+                    try {
+                        Helper.rawFileToRealFile(rawFilename, realFilename, csvFilename, ExifParam.RES_Y.intValue(),
+                                ExifParam.RES_X.intValue(), encoding, SEPARATOR_REAL, exifParams);
+                    } catch (IOException | IllegalArgumentException e) {
+                        e.printStackTrace();
+                        return file.getName();
+                    }
+                    System.out.printf("%s: %d мс.%n", thermogramName, (System.nanoTime() - frameStart) / 1_000_000);
+                    return null;
+                });
+                tasks++;
+            }
+            for (; tasks > 0; tasks--)
+                collectCsvResult(completionService.take(), unprocessedThermograms);
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+        }
+        executor.shutdown();
+
+        System.out.printf("Время конвертации: %d мс, пропущено термограмм: %d.%n",
+                (System.nanoTime() - start) / 1_000_000, skipped);
+        if (unprocessedThermograms.size() == 0)
+            System.out.println("Все термограммы обработаны.");
+        else {
+            System.out.println("Следующие термограммы не обработаны:\n");
+            for (String name : unprocessedThermograms)
+                System.out.println(name + "\n");
+        }
+    }
+
+    /**
+     * Добавляет в список {@code unprocessedThermograms} название термограммы, возвращаемое завершённой задачей
+     * {@code future}, если оно не равно {@code null}.
+     */
+    private static void collectCsvResult(Future<String> future, List<String> unprocessedThermograms)
+            throws InterruptedException, ExecutionException {
+        if (future.get() != null)
+            unprocessedThermograms.add(future.get());
+    }
+
+    /**
+     * Возвращает температурные данные термограммы {@code thermogramName} в виде массива из кадра необработанных
+     * температурных данных и таблицы температур (ровно один из элементов равен {@code null}).
+     * <p>
+     * В зависимости от значения параметра {@code DEFECTS_INPUT} таблица температур извлекается из файла
+     * {@code realTempsFilename} (значение {@code REAL}), или кадр необработанных температурных данных извлекается из файла
+     * в папке {@code SUBDIR_RAW_TEMPS} (значение {@code RAW}) или из самой термограммы {@code thermogramFilename}
+     * (значение {@code THERMOGRAM}). В последних двух случаях, если {@code SAVE_REAL_TEMPS=true}, таблица температур
+     * вычисляется при помощи параметров {@code exifParams} и записывается в файл {@code realTempsFilename} (и, если
+     * {@code REAL_TEMPS_CSV=true}, в файл в формате CSV).
+     *
+     * @throws IOException если произошла ошибка при чтении или записи файлов
+     */
+    private static Object[] readTemperatures(String thermogramName, String thermogramFilename,
+                                             String realTempsFilename, double[] exifParams) throws IOException {
+        RawFrame rawFrame;
+        switch (Property.DEFECTS_INPUT.value()) {
+            case "REAL" -> {
+                return new Object[]{null, RealTempsFile.read(realTempsFilename)};
+            }
+            case "RAW" -> rawFrame = Pgm.read(Helper.filename(DIR_CURRENT, Property.SUBDIR_RAW_TEMPS.value(),
+                            thermogramName + Property.POSTFIX_RAW_TEMPS.value() + EXTENSION_RAW),
+                    ExifParam.RES_X.intValue(), ExifParam.RES_Y.intValue());
+            case "THERMOGRAM" -> rawFrame = RawThermalImage.read(thermogramFilename);
+            default -> throw new IllegalArgumentException("Недопустимое значение параметра DEFECTS_INPUT: " +
+                    Property.DEFECTS_INPUT.value() + ".");
+        }
+
+        if (Property.SAVE_REAL_TEMPS.booleanValue()) {
+            double[][] realTable = Helper.rawFrameToReal(rawFrame, exifParams);
+            RealTempsFile.write(realTable, exifParams,
+                    RealTempsFile.Encoding.valueOf(Property.REAL_TEMPS_ENCODING.value()), realTempsFilename);
+            if (Property.REAL_TEMPS_CSV.booleanValue())
+                Helper.writeAsCsv(realTable, SEPARATOR_REAL, realTempsFilename.substring(0,
+                        realTempsFilename.length() - EXTENSION_REAL.length()) + EXTENSION_REAL_CSV);
+        }
+        return new Object[]{rawFrame, null};
+    }
+
+    /**
+     * Возвращает название файла, из которого извлекаются температурные данные термограммы {@code thermogramName} в
+     * зависимости от значения параметра {@code DEFECTS_INPUT} (см.
+     * {@link #readTemperatures(String, String, String, double[])}), или {@code null}, если они извлекаются из самой
+     * термограммы.
+     */
+    private static String temperaturesFilename(String thermogramName, String realTempsFilename) {
+        return switch (Property.DEFECTS_INPUT.value()) {
+            case "REAL" -> realTempsFilename;
+            case "RAW" -> Helper.filename(DIR_CURRENT, Property.SUBDIR_RAW_TEMPS.value(),
+                    thermogramName + Property.POSTFIX_RAW_TEMPS.value() + EXTENSION_RAW);
+            default -> null;
+        };
     }
 
     public static void actionDefects() throws IOException {
@@ -1342,13 +1720,19 @@ public class Main {
 
         var customPipeAnglesLists = new ArrayList<List<Double>>();
 
+        // Если углы наклона трубы определяются по осям труб (HOUGH), то углы осей термограмм, отсутствующих в файле
+        // custom_pipe_angles.txt, дописываются в этот файл.
+        boolean hough = "HOUGH".equals(Property.PIPE_ANGLE_ESTIMATOR.value());
+        var detectedPipeAngles = new ConcurrentHashMap<String, List<Double>>();
+
+        Map<String, List<Double>> manualPipeAngles = Property.DEFAULT_PIPE_ANGLES.doubleArrayValue()[0] != -1 || hough ?
+                Helper.mapFromFileWithJsonArray(Helper.filename(DIR_CURRENT, CUSTOM_PIPE_ANGLES),
+                        JsonElement::getAsDouble, "Name", "CustomPipeAngles") : null;
+
         if (Property.DEFAULT_PIPE_ANGLES.doubleArrayValue()[0] != -1) {
             List<Double> defaultPipeAngles = Arrays.asList(Property.DEFAULT_PIPE_ANGLES.doubleArrayValue());
-            Map<String, List<Double>> map = Helper.mapFromFileWithJsonArray(
-                    Helper.filename(DIR_CURRENT, CUSTOM_PIPE_ANGLES),
-                    JsonElement::getAsDouble, "Name", "CustomPipeAngles");
             for (Thermogram thermogram : thermograms) {
-                List<Double> angles = map != null ? map.get(thermogram.getName()) : null;
+                List<Double> angles = manualPipeAngles != null ? manualPipeAngles.get(thermogram.getName()) : null;
                 customPipeAnglesLists.add(angles != null ? angles : defaultPipeAngles);
             }
         }
@@ -1363,10 +1747,15 @@ public class Main {
 
         // Сохранение 10-ти последних параметров из конфиг. файла в массив. На этих параметрах основывается
         // метод defects().
+        double[] exifParams = Arrays.copyOfRange(ExifParam.readValues(), 1, ExifParam.readValues().length);
+
         double[] params = new double[10];
         for (int i = 0; i < 10; i++)
             params[i] = Property.values()[Property.values().length - 10 + i].doubleValue();
 
+        // Направления лучей, по которым определяются углы наклона трубы, одинаковы для всех термограмм.
+        var rayDirections = new RayDirections(Property.NUMBER_OF_RAYS.intValue());
+
         var outputFiles = new StringBuilder[4];
         for (int i = 0; i < outputFiles.length; i++)
             outputFiles[i] = new StringBuilder().insert(0, Helper.filename(DIR_CURRENT,
@@ -1383,6 +1772,15 @@ public class Main {
 
         var unprocessedThermograms = new ArrayList<Thermogram>();
 
+        // Сведения о результатах предыдущего запуска и значения параметров, от которых зависят результаты.
+        String manifestFilename = Helper.filename(DIR_CURRENT, Property.SUBDIR_AUXILIARY.value(), DEFECTS_MANIFEST);
+        DefectsManifest manifest = DefectsManifest.read(manifestFilename,
+                Helper.filename(DIR_CURRENT, Property.SUBDIR_AUXILIARY.value(), DEFECTS_MANIFEST_LOGS));
+        String configuration = Arrays.stream(Property.values())
+                .filter(p -> p != Property.CSV_THREADS && p != Property.INCREMENTAL_DEFECTS)
+                .map(p -> p + "=" + p.value())
+                .collect(Collectors.joining("\n")) + "\n" + Arrays.toString(ExifParam.readValues());
+
         int threadPoolSize = (int) Math.ceil(Runtime.getRuntime().availableProcessors() / 2.);
         ExecutorService executorThermograms = Executors.newFixedThreadPool(threadPoolSize);
         ExecutorService executorDefects = Executors.newFixedThreadPool(threadPoolSize);
@@ -1461,12 +1859,44 @@ public class Main {
                                     jLength <= round(Property.K2.doubleValue() * diameterPixel));
                 };
 
+                String[] tmpFilenames = new String[]{pipeSquaresTmpFilename, squaresTmpFilename,
+                        pipeAnglesTmpFilename, pipeAnglesLogTmpFilename};
+                // Углы осей, найденные для термограммы без записи в файле custom_pipe_angles.txt (HOUGH), дописываются
+                // в этот файл. Поэтому сохранённые результаты для такой термограммы не используются, а новые
+                // сохраняются с теми входными данными, которые будут при следующем запуске (с дописанной записью).
+                boolean manual = manualPipeAngles != null && manualPipeAngles.containsKey(thermogramName);
+                boolean detect = hough && !manual;
+                String inputsHash = null;
+                if (Property.INCREMENTAL_DEFECTS.booleanValue() && !detect) {
+                    try {
+                        inputsHash = inputsHash(thermogram, previous, thermogramFilename.toString(),
+                                realTempsFilename.toString(), manual, customPipeAnglesLists.isEmpty() ? null :
+                                        customPipeAnglesLists.get(i));
+                        DefectsManifest.Entry entry = manifest.get(thermogramName, inputsHash,
+                                DefectsManifest.hash(new String[0], rawDefectsFilename.toString(),
+                                        defectsFilename.toString()));
+                        if (entry != null) {
+                            for (int k = 0; k < DefectsManifest.RESULTS_NUMBER; k++)
+                                if (!entry.getResults()[k].isEmpty())
+                                    Helper.write(tmpFilenames[k], entry.getResults()[k]);
+                            manifest.copyLog(entry, pipeAnglesLogTmpFilename);
+                            printProgress(thermogramName + " (входные данные не изменились)");
+                            return new double[]{entry.getTotalPipeSquare(), entry.getTotalSquare()};
+                        }
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        inputsHash = null;
+                    }
+                }
+
                 Object[] o;
                 try {
+                    Object[] temperatures = readTemperatures(thermogramName, thermogramFilename.toString(),
+                            realTempsFilename.toString(), exifParams);
                     o = defects(thermogram, overlap, Property.T_MIN.doubleValue(), Property.T_MAX.doubleValue(),
                             Property.MIN_PIXEL_SQUARE.intValue(), Property.DIAMETER.doubleValue(), params,
                             thermogramFilename.toString(), rawDefectsFilename.toString(),
-                            realTempsFilename.toString(), SEPARATOR_REAL,
+                            (RawFrame) temperatures[0], (ThermalFrame) temperatures[1], exifParams,
                             Property.PIXEL_SIZE.doubleValue() / 1000_000,
                             (int) round(Property.K3.doubleValue() * diameterPixel), ExifParam.FOCAL_LENGTH.value(),
                             ExifParam.RES_X.intValue(), ExifParam.RES_Y.intValue(),
@@ -1477,8 +1907,10 @@ public class Main {
                                             (p1, p2) -> false) : null,
                             Property.DEFAULT_PIPE_ANGLES.doubleArrayValue()[0] != -1 ? function : null,
                             Property.DEFAULT_PIPE_ANGLES.doubleArrayValue()[0] != -1 ? customPipeAnglesLists.get(i) : null,
-                            executorDefects);
+                            detect ? detectedPipeAngles : null,
+                            rayDirections, executorDefects);
                 } catch (Throwable e) {
+                    manifest.remove(thermogramName);
                     unprocessedThermograms.add(thermogram);
                     System.out.println("Термограмма " + thermogramName + " не обработана.");
                     e.printStackTrace();
@@ -1486,6 +1918,16 @@ public class Main {
                     return new double[0];
                 }
 
+                if (Property.INCREMENTAL_DEFECTS.booleanValue() && detect &&
+                        detectedPipeAngles.containsKey(thermogramName))
+                    try {
+                        inputsHash = inputsHash(thermogram, previous, thermogramFilename.toString(),
+                                realTempsFilename.toString(), true, customPipeAnglesLists.isEmpty() ? null :
+                                        detectedPipeAngles.get(thermogramName));
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+
                 var defects = (ArrayList<figures.Polygon<Pixel>>) o[0];
                 var pipeSquares = (ArrayList<Double>) o[1];
                 var squares = (ArrayList<Double>) o[2];
@@ -1517,15 +1959,50 @@ public class Main {
                         thermogramFilename.toString(), defectsFilename.toString(), ExifParam.RES_Y.intValue(),
                         ExifParam.FOCAL_LENGTH.value());
 
+                if (inputsHash != null)
+                    try {
+                        String[] results = new String[DefectsManifest.RESULTS_NUMBER];
+                        for (int k = 0; k < results.length; k++)
+                            results[k] = new File(tmpFilenames[k]).isFile() ?
+                                    new String(Files.readAllBytes(Paths.get(tmpFilenames[k]))) : "";
+                        manifest.put(thermogramName, inputsHash, DefectsManifest.hash(new String[0],
+                                rawDefectsFilename.toString(), defectsFilename.toString()), results,
+                                pipeAnglesLogTmpFilename, totalPipeSquare, totalSquare);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+
+                printProgress(thermogramName);
+                return new double[]{totalPipeSquare, totalSquare};
+            }
+
+            /**
+             * Возвращает хеш входных данных термограммы {@code thermogram} с предыдущей термограммой {@code previous}.
+             * Флаг {@code manual} показывает, есть ли для термограммы запись в файле custom_pipe_angles.txt, а
+             * {@code customPipeAngles} - углы наклона трубы, к которым приводятся найденные углы.
+             *
+             * @throws IOException если произошла ошибка при чтении файлов
+             */
+            private String inputsHash(Thermogram thermogram, Thermogram previous, String thermogramFilename,
+                                      String realTempsFilename, boolean manual, List<Double> customPipeAngles)
+                    throws IOException {
+                return DefectsManifest.hash(new String[]{DefectsManifest.programHash(), configuration,
+                                Property.PIPE_ANGLE_ESTIMATOR.value(), String.valueOf(manual), thermogram.toString(),
+                                previous.toString(), String.valueOf(customPipeAngles)},
+                        thermogramFilename, temperaturesFilename(thermogram.getName(), realTempsFilename));
+            }
+
+            /**
+             * Выводит сообщение о завершении обработки термограммы и доле обработанных термограмм.
+             */
+            private void printProgress(String message) {
                 synchronized (Main.class) {
                     n++;
-                    System.out.println("finish " + thermogramName + "   [ " +
+                    System.out.println("finish " + message + "   [ " +
                             Helper.roundAndAppend(Math.floor(100 * (100. * n / thermograms.length)) / 100, 2, 3) +
                             " % обработано,  осталось " + String.format("%" + (thermograms.length + "").length() + "d",
                             thermograms.length - n) + " ]");
                 }
-
-                return new double[]{totalPipeSquare, totalSquare};
             }
         }
 
@@ -1580,6 +2057,14 @@ public class Main {
         Helper.log(outputFiles[0].toString(), "\ntotalPipeSquare: " + totalPipeSquare + ".");
         Helper.log(outputFiles[1].toString(), "\ntotalSquare: " + totalSquare + ".");
 
+        if (!detectedPipeAngles.isEmpty())
+            addCustomPipeAngles(Helper.filename(DIR_CURRENT, CUSTOM_PIPE_ANGLES), detectedPipeAngles, thermograms);
+
+        if (Property.INCREMENTAL_DEFECTS.booleanValue())
+            manifest.write(manifestFilename, Arrays.stream(thermograms)
+                    .map(Thermogram::getName)
+                    .collect(Collectors.toList()));
+
         Helper.run(DIR_CURRENT, SCRIPT_COPY_GPS + SCRIPT_EXTENSION, OS);
     }
 
@@ -0,0 +1,118 @@
+package main;
+
+import java.nio.FloatBuffer;
+
+import static java.lang.Math.*;
+
+
+/**
+ * Содержит поле ориентаций таблицы температур: таблицы сумм (summed-area table, integral image) компонент
+ * структурного тензора {@code gx*gx}, {@code gy*gy} и {@code gx*gy}, где {@code (gx, gy)} - градиент температуры,
+ * вычисленный оператором Собеля в системе координат c'x'y'. Позволяет находить преобладающее направление в любом
+ * прямоугольнике таблицы за время {@code O(1)}.
+ * <p>
+ * Оператор Собеля раскладывается на разность и сглаживание по строкам и по столбцам, поэтому таблица просматривается
+ * один раз, а на каждый элемент приходится фиксированное число операций. В крайних строках и столбцах таблицы
+ * градиент считается нулевым.
+ * <p>
+ * Температурный контраст сосредоточен на границах трубы, поэтому градиенты в окрестности трубы перпендикулярны ей, и
+ * угол наклона трубы перпендикулярен преобладающему направлению градиента.
+ */
+public class OrientationField {
+    /**
+     * Число столбцов таблиц сумм.
+     */
+    private final int width;
+    /**
+     * Элементы таблиц сумм компонент структурного тензора: элемент {@code (i, j)} равен сумме компоненты в
+     * прямоугольнике таблицы температур с вершинами {@code (0, 0)} и {@code (i-1, j-1)}.
+     */
+    private final double[] sumsXX;
+    private final double[] sumsYY;
+    private final double[] sumsXY;
+
+    private OrientationField(int width, double[] sumsXX, double[] sumsYY, double[] sumsXY) {
+        this.width = width;
+        this.sumsXX = sumsXX;
+        this.sumsYY = sumsYY;
+        this.sumsXY = sumsXY;
+    }
+
+    /**
+     * Строит поле ориентаций таблицы температур {@code thermalFrame}.
+     */
+    public static OrientationField of(ThermalFrame thermalFrame) {
+        int height = thermalFrame.getHeight();
+        int w = thermalFrame.getWidth();
+        int width = w + 1;
+        double[] sumsXX = new double[(height + 1) * width];
+        double[] sumsYY = new double[(height + 1) * width];
+        double[] sumsXY = new double[(height + 1) * width];
+
+        // Для строк row-1, row, row+1 (в кольцевом буфере) хранятся разности соседних по горизонтали температур
+        // T[col+1]-T[col-1] и сглаженные по горизонтали температуры T[col-1]+2T[col]+T[col+1].
+        double[][] diffs = new double[3][w];
+        double[][] smooths = new double[3][w];
+        for (int row = 0; row < min(2, height); row++)
+            filterRow(thermalFrame.row(row), diffs[row], smooths[row]);
+
+        for (int row = 0; row < height; row++) {
+            if (row + 1 < height && row >= 1)
+                filterRow(thermalFrame.row(row + 1), diffs[(row + 1) % 3], smooths[(row + 1) % 3]);
+            boolean inner = row >= 1 && row + 1 < height;
+            double[] dUp = diffs[(row + 2) % 3], d = diffs[row % 3], dDown = diffs[(row + 1) % 3];
+            double[] sUp = smooths[(row + 2) % 3], sDown = smooths[(row + 1) % 3];
+            double rowXX = 0, rowYY = 0, rowXY = 0;
+            for (int col = 0; col < w; col++) {
+                if (inner && col >= 1 && col + 1 < w) {
+                    // Ось c'x' направлена вдоль строк, а ось c'y' - против номеров строк.
+                    double gx = dUp[col] + 2 * d[col] + dDown[col];
+                    double gy = sUp[col] - sDown[col];
+                    rowXX += gx * gx;
+                    rowYY += gy * gy;
+                    rowXY += gx * gy;
+                }
+                int k = (row + 1) * width + col + 1;
+                sumsXX[k] = sumsXX[k - width] + rowXX;
+                sumsYY[k] = sumsYY[k - width] + rowYY;
+                sumsXY[k] = sumsXY[k - width] + rowXY;
+            }
+        }
+        return new OrientationField(width, sumsXX, sumsYY, sumsXY);
+    }
+
+    private static void filterRow(FloatBuffer values, double[] diff, double[] smooth) {
+        int w = diff.length;
+        for (int col = 1; col + 1 < w; col++) {
+            double left = values.get(col - 1);
+            double right = values.get(col + 1);
+            diff[col] = right - left;
+            smooth[col] = left + 2 * values.get(col) + right;
+        }
+    }
+
+    private static double sum(double[] sums, int width, int row1, int col1, int row2, int col2) {
+        return sums[(row2 + 1) * width + col2 + 1] - sums[row1 * width + col2 + 1] - sums[(row2 + 1) * width + col1] +
+                sums[row1 * width + col1];
+    }
+
+    /**
+     * Возвращает угол (в град.) наклона трубы в прямоугольнике таблицы температур со строками {@code row1, ..., row2}
+     * и столбцами {@code col1, ..., col2}, т. е. угол, перпендикулярный преобладающему направлению градиента,
+     * отсчитываемый от положительного направления оси c'x' против часовой стрелки и принадлежащий промежутку
+     * {@code [0,180)}. Если преобладающего направления нет (например, температура в прямоугольнике почти постоянна),
+     * то возвращает {@code -1}.
+     */
+    public double pipeAngle(int row1, int col1, int row2, int col2) {
+        double xx = sum(sumsXX, width, row1, col1, row2, col2);
+        double yy = sum(sumsYY, width, row1, col1, row2, col2);
+        double xy = sum(sumsXY, width, row1, col1, row2, col2);
+        // Средний квадрат градиента меньше 1e-6 гр. Ц. в квадрате означает, что температура почти постоянна (а суммы
+        // такого порядка могут быть вызваны погрешностью вычитания элементов таблиц сумм).
+        if (xx + yy <= 1e-6 * (row2 - row1 + 1) * (col2 - col1 + 1) || xx == yy && xy == 0)
+            return -1;
+        double gradientAngle = atan2(2 * xy, xx - yy) / 2 * 180 / PI;
+        double pipeAngle = gradientAngle + 90;
+        return pipeAngle >= 180 ? pipeAngle - 180 : (pipeAngle < 0 ? pipeAngle + 180 : pipeAngle);
+    }
+}
@@ -0,0 +1,169 @@
+package main;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+
+/**
+ * Содержит методы для чтения и записи файлов с необработанными температурными данными в формате PGM.
+ * <p>
+ * Поддерживаются следующие варианты:
+ * <ul>
+ *     <li> двоичный формат P5 (при максимальном значении {@code >255} каждое значение занимает 2 байта, старший байт
+ *     идёт первым),</li>
+ *     <li> текстовый формат P2,</li>
+ *     <li> текстовый формат без заголовка (т. е. формат P2, у которого удалены первые 3 строки; такие файлы создают
+ *     скрипты raw при {@code RAW_TEMPS_FORMAT=P2}).</li>
+ * </ul>
+ * Значения разбираются непосредственно из байтов файла в массив типа {@code int[]}, без создания промежуточных строк.
+ * <p>
+ * http://netpbm.sourceforge.net/doc/pgm.html
+ */
+public final class Pgm {
+    /**
+     * Максимальное значение, указываемое в заголовке записываемых файлов.
+     */
+    private final static int MAX_VALUE = 65535;
+
+    private Pgm() {
+    }
+
+    /**
+     * Прочитывает кадр из файла {@code filename}. Если файл содержит заголовок, то размеры кадра берутся из него, иначе
+     * - из аргументов {@code width} и {@code height}.
+     *
+     * @throws IOException              если произошла ошибка при чтении файла
+     * @throws IllegalArgumentException если файл содержит меньше значений, чем требуется, или имеет некорректный
+     *                                  заголовок
+     */
+    public static RawFrame read(String filename, int width, int height) throws IOException {
+        byte[] bytes = Files.readAllBytes(Paths.get(filename));
+        int[] pos = {skipWhitespace(bytes, 0)};
+
+        if (pos[0] + 1 < bytes.length && bytes[pos[0]] == 'P' && (bytes[pos[0] + 1] == '2' || bytes[pos[0] + 1] == '5')) {
+            boolean binary = bytes[pos[0] + 1] == '5';
+            pos[0] += 2;
+            width = readHeaderValue(bytes, pos, filename);
+            height = readHeaderValue(bytes, pos, filename);
+            int maxVal = readHeaderValue(bytes, pos, filename);
+            if (binary)
+                // После максимального значения идёт ровно один пробельный символ.
+                return readBinary(bytes, pos[0] + 1, width, height, maxVal > 255 ? 2 : 1, filename);
+            return readAscii(bytes, pos[0], width, height, filename);
+        }
+        return readAscii(bytes, pos[0], width, height, filename);
+    }
+
+    /**
+     * Записывает кадр {@code frame} в файл {@code filename} в формате P5 (по 2 байта на значение) или, если
+     * {@code binary} равно {@code false}, в формате P2.
+     *
+     * @throws IOException если произошла ошибка при записи файла
+     */
+    public static void write(RawFrame frame, String filename, boolean binary) throws IOException {
+        int[] data = frame.getData();
+        byte[] header = ((binary ? "P5" : "P2") + "\n" + frame.getWidth() + " " + frame.getHeight() + "\n" +
+                MAX_VALUE + "\n").getBytes(StandardCharsets.US_ASCII);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filename), 1 << 16)) {
+            out.write(header);
+            if (binary) {
+                byte[] bytes = new byte[2 * data.length];
+                for (int k = 0; k < data.length; k++) {
+                    bytes[2 * k] = (byte) (data[k] >>> 8);
+                    bytes[2 * k + 1] = (byte) data[k];
+                }
+                out.write(bytes);
+            } else
+                for (int row = 0; row < frame.getHeight(); row++) {
+                    StringBuilder line = new StringBuilder();
+                    for (int col = 0; col < frame.getWidth(); col++)
+                        line.append(frame.get(row, col)).append(' ');
+                    line.append('\n');
+                    out.write(line.toString().getBytes(StandardCharsets.US_ASCII));
+                }
+        }
+    }
+
+    /**
+     * Разбирает {@code width*height} значений, записанных в двоичном виде по {@code bytesPerValue} байт начиная с
+     * позиции {@code from} массива {@code bytes}.
+     */
+    private static RawFrame readBinary(byte[] bytes, int from, int width, int height, int bytesPerValue,
+                                       String filename) {
+        int[] data = new int[width * height];
+        if (from + data.length * bytesPerValue > bytes.length)
+            throw new IllegalArgumentException("Файл " + filename + " содержит меньше " + data.length + " значений.");
+
+        if (bytesPerValue == 2)
+            for (int k = 0, p = from; k < data.length; k++, p += 2)
+                data[k] = (bytes[p] & 0xff) << 8 | bytes[p + 1] & 0xff;
+        else
+            for (int k = 0, p = from; k < data.length; k++, p++)
+                data[k] = bytes[p] & 0xff;
+        return new RawFrame(width, height, data);
+    }
+
+    /**
+     * Разбирает {@code width*height} неотрицательных целых чисел, разделённых пробельными символами, начиная с позиции
+     * {@code from} массива {@code bytes}.
+     */
+    private static RawFrame readAscii(byte[] bytes, int from, int width, int height, String filename) {
+        int[] data = new int[width * height];
+        int p = from;
+        for (int k = 0; k < data.length; k++) {
+            p = skipWhitespace(bytes, p);
+            if (p == bytes.length)
+                throw new IllegalArgumentException("Файл " + filename + " содержит меньше " + data.length +
+                        " значений.");
+            int value = 0;
+            int start = p;
+            while (p < bytes.length && bytes[p] >= '0' && bytes[p] <= '9')
+                value = value * 10 + (bytes[p++] - '0');
+            if (p == start)
+                throw new IllegalArgumentException("Файл " + filename + " содержит недопустимый символ '" +
+                        (char) bytes[p] + "' в позиции " + p + ".");
+            data[k] = value;
+        }
+        return new RawFrame(width, height, data);
+    }
+
+    /**
+     * Прочитывает очередное число заголовка, пропуская пробельные символы и комментарии, и сдвигает позицию
+     * {@code pos[0]} на символ, следующий за этим числом.
+     */
+    private static int readHeaderValue(byte[] bytes, int[] pos, String filename) {
+        int p = pos[0];
+        while (true) {
+            p = skipWhitespace(bytes, p);
+            if (p < bytes.length && bytes[p] == '#')
+                while (p < bytes.length && bytes[p] != '\n')
+                    p++;
+            else
+                break;
+        }
+        int value = 0;
+        int start = p;
+        while (p < bytes.length && bytes[p] >= '0' && bytes[p] <= '9')
+            value = value * 10 + (bytes[p++] - '0');
+        if (p == start)
+            throw new IllegalArgumentException("Некорректный заголовок файла " + filename + ".");
+        pos[0] = p;
+        return value;
+    }
+
+    /**
+     * Возвращает позицию первого непробельного символа массива {@code bytes}, начиная с позиции {@code from}, или длину
+     * массива, если такого символа нет.
+     */
+    private static int skipWhitespace(byte[] bytes, int from) {
+        while (from < bytes.length && (bytes[from] == ' ' || bytes[from] == '\n' || bytes[from] == '\r' ||
+                bytes[from] == '\t'))
+            from++;
+        return from;
+    }
+}
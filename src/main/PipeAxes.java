@@ -0,0 +1,159 @@
+package main;
+
+import figures.Pixel;
+import figures.Rectangle;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.Math.*;
+
+
+/**
+ * Содержит оси труб термограммы, найденные преобразованием Хафа.
+ * <p>
+ * Граничными считаются пиксели, температура которых отличается от температуры соседнего (справа или снизу) пикселя не
+ * менее, чем на {@code tempJump} гр. Ц. (пиксели запрещённых зон не рассматриваются). Каждый граничный пиксель
+ * голосует за все прямые {@code x*cos(theta)+y*sin(theta)=rho} (в системе координат c'x'y'), проходящие через него,
+ * где {@code theta=0, 1, ..., 179} град., а {@code rho} округляется до целого. Осями считаются прямые, набравшие
+ * наибольшее число голосов (не меньше {@code minVotes}); после выбора оси голоса близких к ней прямых (угол между
+ * которыми и осью не превышает {@link #SUPPRESSION_ANGLE}, а расстояние - {@code suppressionDistance}) не
+ * учитываются. Тем самым две границы одной трубы дают одну ось, если {@code suppressionDistance} не меньше диаметра
+ * трубы.
+ */
+public class PipeAxes {
+    /**
+     * Угол (в град.), в пределах которого подавляются прямые, близкие к найденной оси.
+     */
+    private final static int SUPPRESSION_ANGLE = 10;
+    private final static double[] COS = new double[180];
+    private final static double[] SIN = new double[180];
+
+    static {
+        for (int theta = 0; theta < 180; theta++) {
+            COS[theta] = cos(theta * PI / 180);
+            SIN[theta] = sin(theta * PI / 180);
+        }
+    }
+
+    /**
+     * Углы {@code theta} (в град.) нормалей осей и расстояния {@code rho} от начала координат до осей.
+     */
+    private final int[] thetas;
+    private final int[] rhos;
+
+    private PipeAxes(int[] thetas, int[] rhos) {
+        this.thetas = thetas;
+        this.rhos = rhos;
+    }
+
+    /**
+     * Находит не более {@code maxAxes} осей труб в таблице температур {@code thermalFrame}.
+     */
+    public static PipeAxes find(ThermalFrame thermalFrame, List<Rectangle<Pixel>> forbiddenZones, double tempJump,
+                                int maxAxes, int minVotes, int suppressionDistance) {
+        int height = thermalFrame.getHeight();
+        int width = thermalFrame.getWidth();
+
+        var edges = new BitMask(height, width);
+        FloatBuffer next = thermalFrame.row(0);
+        for (int row = 0; row < height; row++) {
+            FloatBuffer values = next;
+            next = row + 1 < height ? thermalFrame.row(row + 1) : null;
+            for (int col = 0; col < width; col++) {
+                float value = values.get(col);
+                if (col + 1 < width && abs(value - values.get(col + 1)) >= tempJump ||
+                        next != null && abs(value - next.get(col)) >= tempJump)
+                    edges.set(row, col);
+            }
+        }
+        Helper.nullifyRectangles(edges, forbiddenZones, height);
+
+        int maxRho = (int) ceil(hypot(width, height));
+        int rhosNumber = 2 * maxRho + 1;
+        int[] votes = new int[180 * rhosNumber];
+        for (int row = 0; row < height; row++) {
+            int y = height - 1 - row;
+            for (int x = edges.nextSetBit(row, 0); x != -1; x = edges.nextSetBit(row, x + 1))
+                for (int theta = 0; theta < 180; theta++)
+                    votes[theta * rhosNumber + (int) round(x * COS[theta] + y * SIN[theta]) + maxRho]++;
+        }
+
+        var thetas = new ArrayList<Integer>();
+        var rhos = new ArrayList<Integer>();
+        while (thetas.size() < maxAxes) {
+            int best = 0;
+            for (int k = 1; k < votes.length; k++)
+                if (votes[k] > votes[best])
+                    best = k;
+            if (votes[best] < minVotes || votes[best] == 0)
+                break;
+            int theta = best / rhosNumber;
+            int rho = best % rhosNumber - maxRho;
+            thetas.add(theta);
+            rhos.add(rho);
+
+            // Прямая (theta+180, rho) совпадает с прямой (theta, -rho).
+            for (int dt = -SUPPRESSION_ANGLE; dt <= SUPPRESSION_ANGLE; dt++) {
+                int t = theta + dt;
+                int r = rho;
+                if (t < 0 || t >= 180) {
+                    t = t < 0 ? t + 180 : t - 180;
+                    r = -rho;
+                }
+                for (int k = max(r - suppressionDistance, -maxRho); k <= min(r + suppressionDistance, maxRho); k++)
+                    votes[t * rhosNumber + k + maxRho] = 0;
+            }
+        }
+
+        return new PipeAxes(thetas.stream().mapToInt(Integer::intValue).toArray(),
+                rhos.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Возвращает число осей.
+     */
+    public int size() {
+        return thetas.length;
+    }
+
+    /**
+     * Возвращает угол (в град.) наклона оси с номером {@code k}, отсчитываемый от положительного направления оси c'x'
+     * против часовой стрелки и принадлежащий промежутку {@code [0,180)}.
+     */
+    public double angle(int k) {
+        return (thetas[k] + 90) % 180;
+    }
+
+    /**
+     * Возвращает углы наклона осей (см. {@link #angle(int)}) в порядке убывания числа голосов, пропуская углы,
+     * отличающиеся от одного из предыдущих углов не более чем на {@link #SUPPRESSION_ANGLE} (например, углы
+     * параллельных участков одной трубы).
+     */
+    public List<Double> getAngles() {
+        var angles = new ArrayList<Double>();
+        for (int k = 0; k < size(); k++) {
+            double angle = angle(k);
+            if (angles.stream().noneMatch(a -> min(abs(a - angle), 180 - abs(a - angle)) <= SUPPRESSION_ANGLE))
+                angles.add(angle);
+        }
+        return angles;
+    }
+
+    /**
+     * Возвращает номер оси, ближайшей к пикселю {@code pixel}, или {@code -1}, если осей нет.
+     */
+    public int nearest(Pixel pixel) {
+        int nearest = -1;
+        double minDistance = Double.MAX_VALUE;
+        for (int k = 0; k < size(); k++) {
+            double distance = abs(pixel.getI() * COS[thetas[k]] + pixel.getJ() * SIN[thetas[k]] - rhos[k]);
+            if (distance < minDistance) {
+                nearest = k;
+                minDistance = distance;
+            }
+        }
+        return nearest;
+    }
+}
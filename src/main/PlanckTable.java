@@ -0,0 +1,97 @@
+package main;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+
+/**
+ * Содержит таблицу температур, соответствующих всем 16-битовым необработанным температурным значениям при заданных
+ * параметрах калибровки. Значения таблицы вычисляются при помощи {@link Helper#rawValueToReal(int, double[])}, поэтому
+ * результаты преобразования при помощи таблицы совпадают с результатами этого метода.
+ * <p>
+ * Таблицы кэшируются: для каждого набора параметров (Planck R1, Planck R2, Planck O, Planck B, Planck F, emissivity,
+ * Reflected Apparent Temperature) таблица строится один раз.
+ */
+public final class PlanckTable {
+    /**
+     * Число необработанных температурных значений.
+     */
+    private final static int SIZE = 1 << 16;
+    /**
+     * Число параметров калибровки, от которых зависит преобразование.
+     */
+    private final static int PARAMS_NUMBER = 7;
+    /**
+     * Построенные таблицы.
+     */
+    private final static Map<List<Double>, PlanckTable> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Параметры калибровки.
+     */
+    private final double[] params;
+    /**
+     * Температуры, соответствующие необработанным температурным значениям {@code 0, ..., SIZE-1}.
+     */
+    private final double[] values;
+
+    private PlanckTable(double[] params) {
+        this.params = params;
+        values = new double[SIZE];
+        for (int rawValue = 0; rawValue < SIZE; rawValue++)
+            values[rawValue] = Helper.rawValueToReal(rawValue, params);
+    }
+
+    /**
+     * Возвращает таблицу, соответствующую параметрам калибровки {@code params} (используются первые
+     * {@code PARAMS_NUMBER} значений в том же порядке, что и в {@link Helper#rawValueToReal(int, double[])}).
+     */
+    public static PlanckTable of(double[] params) {
+        double[] key = Arrays.copyOf(params, PARAMS_NUMBER);
+        return CACHE.computeIfAbsent(Arrays.stream(key).boxed().collect(Collectors.toList()),
+                k -> new PlanckTable(key));
+    }
+
+    /**
+     * Конвертирует необработанное температурное значение {@code rawValue} в температуру.
+     */
+    public double toReal(int rawValue) {
+        return rawValue >= 0 && rawValue < SIZE ? values[rawValue] : Helper.rawValueToReal(rawValue, params);
+    }
+
+    /**
+     * Возвращает диапазон {@code [rawMin, rawMax]} 16-битовых необработанных температурных значений, которым
+     * соответствуют температуры из интервала ({@code tMin}, {@code tMax}), или {@code null}, если эти значения не
+     * образуют диапазон (что невозможно, если зависимость температуры от необработанного значения монотонна). Если
+     * таких значений нет, то возвращается пустой диапазон ({@code rawMin > rawMax}).
+     * <p>
+     * Диапазон находится просмотром таблицы, поэтому проверка принадлежности ему необработанного значения даёт тот же
+     * результат, что и сравнение соответствующей температуры с {@code tMin} и {@code tMax}.
+     */
+    public int[] rawRange(double tMin, double tMax) {
+        int rawMin = -1;
+        int rawMax = -2;
+        for (int rawValue = 0; rawValue < SIZE; rawValue++)
+            if (values[rawValue] > tMin && values[rawValue] < tMax) {
+                if (rawMin == -1)
+                    rawMin = rawValue;
+                rawMax = rawValue;
+            }
+        for (int rawValue = rawMin + 1; rawValue < rawMax; rawValue++)
+            if (!(values[rawValue] > tMin && values[rawValue] < tMax))
+                return null;
+        return new int[]{rawMin, rawMax};
+    }
+
+    /**
+     * Конвертирует строку {@code row} таблицы необработанных температурных данных, хранящейся построчно в массиве
+     * {@code rawData}, в строку {@code realRow} таблицы температур.
+     */
+    public void toReal(int[] rawData, int row, double[] realRow) {
+        for (int j = 0, k = row * realRow.length; j < realRow.length; j++, k++)
+            realRow[j] = toReal(rawData[k]);
+    }
+}
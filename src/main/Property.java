@@ -18,9 +18,17 @@ public enum Property {
 
     SUBDIR_RAW_TEMPS("SUBDIR_RAW_TEMPS"),
     POSTFIX_RAW_TEMPS("POSTFIX_RAW_TEMPS"),
+    RAW_TEMPS_FORMAT("RAW_TEMPS_FORMAT"),
 
     SUBDIR_REAL_TEMPS("SUBDIR_REAL_TEMPS"),
     POSTFIX_REAL_TEMPS("POSTFIX_REAL_TEMPS"),
+    REAL_TEMPS_ENCODING("REAL_TEMPS_ENCODING", "FLOAT32"),
+    REAL_TEMPS_CSV("REAL_TEMPS_CSV", "false"),
+    CSV_THREADS("CSV_THREADS", "0"),
+
+    DEFECTS_INPUT("DEFECTS_INPUT", "REAL"),
+    SAVE_REAL_TEMPS("SAVE_REAL_TEMPS", "false"),
+    INCREMENTAL_DEFECTS("INCREMENTAL_DEFECTS", "true"),
 
     SUBDIR_RAW_DEFECTS("SUBDIR_RAW_DEFECTS"),
     POSTFIX_RAW_DEFECTS("POSTFIX_RAW_DEFECTS"),
@@ -36,6 +44,12 @@ public enum Property {
     T_MAX("T_MAX"),
     MIN_PIXEL_SQUARE("MIN_PIXEL_SQUARE"),
     MIN_INTERSECTION_SQUARE("MIN_INTERSECTION_SQUARE"),
+    SEGMENTATION("SEGMENTATION", "RECTANGLES"),
+    TILE_SIZE("TILE_SIZE", "0"),
+    NUMBER_OF_RAYS("NUMBER_OF_RAYS", "8"),
+    PIPE_ANGLE_ESTIMATOR("PIPE_ANGLE_ESTIMATOR", "JUMPS"),
+    HOUGH_MAX_AXES("HOUGH_MAX_AXES", "3"),
+    HOUGH_MIN_VOTES("HOUGH_MIN_VOTES", "100"),
 
     K1("K1"),
     K2("K2"),
@@ -66,6 +80,14 @@ public enum Property {
         this.name = name;
     }
 
+    /**
+     * @param defaultValue значение параметра, используемое в случае его отсутствия в конфигурационном файле
+     */
+    Property(String name, String defaultValue) {
+        this.name = name;
+        this.value = defaultValue;
+    }
+
     static {
         Scanner sc = null;
         try {
@@ -92,6 +114,10 @@ public enum Property {
         return Integer.parseInt(value);
     }
 
+    boolean booleanValue() {
+        return Boolean.parseBoolean(value);
+    }
+
     double doubleValue() {
         return Double.parseDouble(value);
     }
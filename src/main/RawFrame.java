@@ -0,0 +1,63 @@
+package main;
+
+
+/**
+ * Содержит кадр необработанных температурных данных размером {@code height x width}. Значения хранятся построчно в
+ * одном массиве, начиная с верхней строки термограммы, т. е. значение с индексами ({@code row}, {@code col}) таблицы
+ * находится в позиции {@code row*width+col}.
+ */
+public class RawFrame {
+    /**
+     * Ширина кадра (число столбцов).
+     */
+    private final int width;
+    /**
+     * Высота кадра (число строк).
+     */
+    private final int height;
+    /**
+     * Значения кадра.
+     */
+    private final int[] data;
+
+    /**
+     * @throws IllegalArgumentException если длина массива {@code data} не равна {@code width*height}
+     */
+    public RawFrame(int width, int height, int[] data) {
+        if (data.length != width * height)
+            throw new IllegalArgumentException("Длина массива (=" + data.length + ") не равна произведению размеров " +
+                    "кадра (=" + width + "x" + height + ").");
+        this.width = width;
+        this.height = height;
+        this.data = data;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int[] getData() {
+        return data;
+    }
+
+    /**
+     * Возвращает значение, находящееся в строке {@code row} и столбце {@code col} таблицы.
+     */
+    public int get(int row, int col) {
+        return data[row * width + col];
+    }
+
+    /**
+     * Возвращает представление текущего кадра в виде таблицы размером {@code height x width}.
+     */
+    public int[][] toTable() {
+        int[][] table = new int[height][width];
+        for (int row = 0; row < height; row++)
+            System.arraycopy(data, row * width, table[row], 0, width);
+        return table;
+    }
+}
@@ -0,0 +1,196 @@
+package main;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+
+/**
+ * Содержит методы для извлечения необработанных температурных данных (EXIF-параметр Raw Thermal Image) из
+ * радиометрических термограмм в формате R-JPEG без вызова внешних программ (exiftool, ImageMagick).
+ * <p>
+ * Данные хранятся в сегментах APP1 файла JPEG, начинающихся с подписи {@code FLIR\0}. Содержимое этих сегментов (без
+ * 8-байтового заголовка), записанное подряд в порядке их номеров, образует файл FFF, который состоит из заголовка,
+ * оглавления и записей. Необработанные температурные данные содержатся в записи типа {@code RAW_DATA} в виде
+ * несжатой таблицы 16-битовых значений или в виде изображения PNG.
+ * <p>
+ * https://exiftool.org/TagNames/FLIR.html
+ */
+public final class RawThermalImage {
+    /**
+     * Маркер начала изображения JPEG.
+     */
+    private final static int SOI = 0xFFD8;
+    /**
+     * Маркер сегмента APP1.
+     */
+    private final static int APP1 = 0xFFE1;
+    /**
+     * Маркер начала сжатых данных JPEG, после которого сегменты с метаданными не встречаются.
+     */
+    private final static int SOS = 0xFFDA;
+    /**
+     * Длина заголовка сегмента APP1 с данными FFF: подпись {@code FLIR\0}, байт {@code 0x01}, номер сегмента и номер
+     * последнего сегмента.
+     */
+    private final static int FLIR_HEADER_LENGTH = 8;
+    /**
+     * Тип записи FFF, содержащей необработанные температурные данные.
+     */
+    final static int RAW_DATA = 1;
+    /**
+     * Длина записи оглавления FFF.
+     */
+    private final static int FFF_ENTRY_LENGTH = 32;
+    /**
+     * Смещение таблицы значений относительно начала записи {@code RAW_DATA}.
+     */
+    private final static int RAW_DATA_HEADER_LENGTH = 0x20;
+
+    private RawThermalImage() {
+    }
+
+    /**
+     * Извлекает необработанные температурные данные из термограммы {@code filename}.
+     *
+     * @throws IOException              если произошла ошибка при чтении файла
+     * @throws IllegalArgumentException если файл не является радиометрической термограммой
+     */
+    public static RawFrame read(String filename) throws IOException {
+        byte[] fff = extractFff(Files.readAllBytes(Paths.get(filename)), filename);
+        int[] record = findRecord(fff, RAW_DATA, filename);
+        if (record == null)
+            throw new IllegalArgumentException("Термограмма " + filename + " не содержит необработанных " +
+                    "температурных данных.");
+        return readRawData(fff, record[0], record[1], filename);
+    }
+
+    /**
+     * Возвращает смещение и длину первой записи типа {@code type} данных FFF {@code fff} или {@code null}, если такой
+     * записи нет.
+     *
+     * @throws IllegalArgumentException если данные FFF имеют некорректный заголовок
+     */
+    static int[] findRecord(byte[] fff, int type, String filename) {
+        if (fff.length < 32 || fff[1] != 'F' || fff[2] != 'F' || fff[3] != 0)
+            throw new IllegalArgumentException("Термограмма " + filename + " содержит некорректные данные FFF.");
+        int indexOffset = int32(fff, 24, true);
+        int entriesNumber = int32(fff, 28, true);
+
+        for (int k = 0; k < entriesNumber; k++) {
+            long entry = indexOffset + (long) k * FFF_ENTRY_LENGTH;
+            if (indexOffset < 0 || entry + FFF_ENTRY_LENGTH > fff.length)
+                break;
+            if (uint16(fff, (int) entry, true) == type) {
+                int offset = int32(fff, (int) entry + 12, true);
+                int length = int32(fff, (int) entry + 16, true);
+                return offset >= 0 && length >= 0 && length <= fff.length - offset ? new int[]{offset, length} : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает {@code true}, если значения записи данных FFF {@code fff}, которая начинается с позиции
+     * {@code offset}, записаны с порядком байтов big-endian. Порядок байтов определяется по первому 16-битовому
+     * значению записи, которое должно быть небольшим числом.
+     */
+    static boolean isBigEndian(byte[] fff, int offset) {
+        return uint16(fff, offset, true) < 0x0100;
+    }
+
+    /**
+     * Собирает данные FFF из сегментов APP1 файла JPEG, содержимое которого находится в массиве {@code jpeg}.
+     */
+    static byte[] extractFff(byte[] jpeg, String filename) {
+        if (jpeg.length < 4 || uint16(jpeg, 0, true) != SOI)
+            throw new IllegalArgumentException("Файл " + filename + " не является изображением JPEG.");
+
+        // Сегменты с данными FFF, упорядоченные по номерам.
+        byte[][] chunks = new byte[256][];
+        int p = 2;
+        while (p + 4 <= jpeg.length && (jpeg[p] & 0xff) == 0xFF) {
+            int marker = uint16(jpeg, p, true);
+            if (marker == SOS)
+                break;
+            int length = uint16(jpeg, p + 2, true);
+            int data = p + 4;
+            if (marker == APP1 && length >= 2 + FLIR_HEADER_LENGTH && data + length - 2 <= jpeg.length &&
+                    jpeg[data] == 'F' && jpeg[data + 1] == 'L' && jpeg[data + 2] == 'I' && jpeg[data + 3] == 'R' &&
+                    jpeg[data + 4] == 0) {
+                byte[] chunk = new byte[length - 2 - FLIR_HEADER_LENGTH];
+                System.arraycopy(jpeg, data + FLIR_HEADER_LENGTH, chunk, 0, chunk.length);
+                chunks[jpeg[data + 6] & 0xff] = chunk;
+            }
+            p += 2 + length;
+        }
+
+        ByteArrayOutputStream fff = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks)
+            if (chunk != null)
+                fff.write(chunk, 0, chunk.length);
+        if (fff.size() == 0)
+            throw new IllegalArgumentException("Файл " + filename + " не является радиометрической термограммой.");
+        return fff.toByteArray();
+    }
+
+    /**
+     * Извлекает таблицу значений из записи {@code RAW_DATA} длиной {@code length}, которая начинается с позиции
+     * {@code offset} массива {@code fff}.
+     * <p>
+     * Порядок байтов записи определяется при помощи {@link #isBigEndian(byte[], int)}.
+     */
+    private static RawFrame readRawData(byte[] fff, int offset, int length, String filename) throws IOException {
+        if (offset < 0 || length < RAW_DATA_HEADER_LENGTH || length > fff.length - offset)
+            throw new IllegalArgumentException("Термограмма " + filename + " содержит некорректную запись RAW_DATA.");
+        boolean bigEndian = isBigEndian(fff, offset);
+        int width = uint16(fff, offset + 2, bigEndian);
+        int height = uint16(fff, offset + 4, bigEndian);
+        int from = offset + RAW_DATA_HEADER_LENGTH;
+        // Число значений и число байтов записи после заголовка (без переполнения int).
+        long size = (long) width * height;
+        int available = offset + length - from;
+        int[] data;
+
+        if (available >= 4 &&
+                fff[from] == (byte) 0x89 && fff[from + 1] == 'P' && fff[from + 2] == 'N' && fff[from + 3] == 'G') {
+            // Значения в PNG записаны с обратным порядком байтов.
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(fff, from, available));
+            if (image == null || image.getWidth() != width || image.getHeight() != height)
+                throw new IllegalArgumentException("Термограмма " + filename + " содержит некорректное изображение " +
+                        "PNG.");
+            data = new int[(int) size];
+            Raster raster = image.getRaster();
+            for (int row = 0, k = 0; row < height; row++)
+                for (int col = 0; col < width; col++, k++) {
+                    int value = raster.getSample(col, row, 0);
+                    data[k] = (value & 0xff) << 8 | value >>> 8;
+                }
+        } else {
+            if (2 * size > available)
+                throw new IllegalArgumentException("Термограмма " + filename + " содержит меньше " + size +
+                        " значений.");
+            data = new int[(int) size];
+            for (int k = 0, p = from; k < data.length; k++, p += 2)
+                data[k] = uint16(fff, p, bigEndian);
+        }
+        return new RawFrame(width, height, data);
+    }
+
+    static int uint16(byte[] bytes, int p, boolean bigEndian) {
+        return bigEndian ?
+                (bytes[p] & 0xff) << 8 | bytes[p + 1] & 0xff :
+                (bytes[p + 1] & 0xff) << 8 | bytes[p] & 0xff;
+    }
+
+    static int int32(byte[] bytes, int p, boolean bigEndian) {
+        return bigEndian ?
+                uint16(bytes, p, true) << 16 | uint16(bytes, p + 2, true) :
+                uint16(bytes, p + 2, false) << 16 | uint16(bytes, p, false);
+    }
+}
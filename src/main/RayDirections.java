@@ -0,0 +1,138 @@
+package main;
+
+import figures.Point;
+
+import static java.lang.Math.*;
+
+
+/**
+ * Содержит направления лучей, по которым определяется угол наклона трубы, и связанные с ними таблицы индексов. Зависит
+ * только от числа лучей, поэтому создаётся один раз при запуске.
+ * <p>
+ * Круг разделён на {@code l} углов (лучей), {@code l} кратно 8. Углы отсчитываются от положительного направления оси
+ * c'y' по часовой стрелке и нумеруются от 0, начиная с верхнего луча: 0, 45, 90, 135, 180, -135, -90, -45 (при
+ * {@code l=8}).
+ * <p>
+ * Диаметры - это пары диаметрально противоположных лучей. Почти-диаметры - это пары лучей, угол между которыми
+ * отличается от 180 не более чем на 45 (при {@code l=8} - ровно на 45), но не равен 180. С диаметрами и
+ * почти-диаметрами (эталонными направлениями) связаны углы наклона прямых, образующих равные углы с составляющими их
+ * лучами. Углы наклона отсчитываются от положительного направления оси c'x' против часовой стрелки и принадлежат
+ * промежутку (-90,90].
+ */
+public class RayDirections {
+    /**
+     * Углы (в град.) лучей.
+     */
+    private final double[] angles;
+    /**
+     * Синусы и косинусы углов лучей.
+     */
+    private final double[] sins;
+    private final double[] coss;
+    /**
+     * Для диаметра с номером {@code i} (т. е. с лучами {@code i} и {@code i+l/2}) {@code right[i][]} - индексы лучей,
+     * лежащих справа от этого диаметра, а {@code left[i][]} - слева. При увеличении номера диаметра, диаметр
+     * поворачивается по часовой стрелке, и вслед за ним также поворачиваются эти множества индексов.
+     */
+    private final int[][] right;
+    private final int[][] left;
+    private final Point[] diameters;
+    private final double[] diameterAngles;
+    private final Point[] almostDiameters;
+    private final double[] almostDiameterAngles;
+
+    /**
+     * @throws IllegalArgumentException если {@code raysNumber} не является положительным числом, кратным 8
+     */
+    public RayDirections(int raysNumber) {
+        if (raysNumber <= 0 || raysNumber % 8 != 0)
+            throw new IllegalArgumentException("Недопустимое значение параметра NUMBER_OF_RAYS: " + raysNumber +
+                    " (число лучей должно быть положительным и кратным 8).");
+        int l = raysNumber;
+        int q = l / 8;    // число углов, приходящихся на 1/8 часть круга
+        int half = l / 2; // разность номеров диаметрально противоположных углов
+
+        angles = new double[l];
+        sins = new double[l];
+        coss = new double[l];
+        for (int i = 0; i < l; i++) {
+            angles[i] = i * 360. / l - (i * 360 / l <= 180 ? 0 : 360);
+            sins[i] = Math.sin(angles[i] * PI / 180);
+            coss[i] = Math.cos(angles[i] * PI / 180);
+        }
+
+        right = new int[half][half - 1];
+        left = new int[half][half - 1];
+        for (int i = 0; i < half; i++)
+            for (int j = 0; j < half - 1; j++) {
+                right[i][j] = i + j + 1;
+                left[i][j] = right[i][j] + half - (right[i][j] + half < l ? 0 : l);
+            }
+
+        diameters = new Point[half];
+        diameterAngles = new double[half];
+        for (int i = 0; i < half; i++) {
+            diameters[i] = new Point(i, i + half);
+            diameterAngles[i] = 90 - 360. * i / l;
+        }
+
+        // Почти-диаметр (i, i+l/2+s) состоит из лучей, угол между которыми (по часовой стрелке) равен 180+s*360/l.
+        almostDiameters = new Point[l * q];
+        almostDiameterAngles = new double[l * q];
+        for (int i = 0, k = 0; i < l; i++)
+            for (int s = 1; s <= q; s++, k++) {
+                almostDiameters[k] = new Point(i, i + half + s - (i + half + s < l ? 0 : l));
+                double tmp = 90 - 180. * (2 * i + s) / l;
+                while (tmp <= -90)
+                    tmp += 180;
+                almostDiameterAngles[k] = tmp;
+            }
+    }
+
+    /**
+     * Возвращает число лучей.
+     */
+    public int size() {
+        return angles.length;
+    }
+
+    public double[] getAngles() {
+        return angles.clone();
+    }
+
+    double angle(int k) {
+        return angles[k];
+    }
+
+    double sin(int k) {
+        return sins[k];
+    }
+
+    double cos(int k) {
+        return coss[k];
+    }
+
+    int[][] getRight() {
+        return right;
+    }
+
+    int[][] getLeft() {
+        return left;
+    }
+
+    Point[] getDiameters() {
+        return diameters;
+    }
+
+    double[] getDiameterAngles() {
+        return diameterAngles;
+    }
+
+    Point[] getAlmostDiameters() {
+        return almostDiameters;
+    }
+
+    double[] getAlmostDiameterAngles() {
+        return almostDiameterAngles;
+    }
+}
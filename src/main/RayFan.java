@@ -0,0 +1,155 @@
+package main;
+
+import figures.Pixel;
+import figures.RasterLine;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.Math.*;
+
+
+/**
+ * Содержит веер лучей, исходящих из пикселя термограммы, который используется при определении угла наклона трубы (см.
+ * {@link Main#findJump}). Направления лучей задаются объектом {@link RayDirections}.
+ * <p>
+ * Смещения пикселей луча относительно начального пикселя зависят только от угла и земной длины луча и от параметров
+ * съёмки кадра (высоты, размера пикселя и фокусного расстояния). Поэтому для каждой пары (угол, длина) смещения
+ * вычисляются один раз (шаблон луча) и хранятся до конца обработки кадра, а обход луча сводится к сдвигу шаблона и
+ * просмотру температур. Если конец луча выходит за пределы термограммы, то луч укорачивается, шаблон не применим, и
+ * обход выполняется методом {@link Main#findJump}.
+ * <p>
+ * Шаблоны могут запрашиваться одновременно из нескольких потоков.
+ */
+public class RayFan {
+    private final RayDirections directions;
+    private final double height;
+    private final double pixelSize;
+    private final double focalLength;
+    private final int resX;
+    private final int resY;
+    /**
+     * Шаблоны лучей, ключами которых являются земные длины лучей.
+     */
+    private final Map<Double, Templates> templates = new ConcurrentHashMap<>();
+
+    /**
+     * Шаблоны лучей одной длины.
+     */
+    private static class Templates {
+        /**
+         * Смещения концов лучей относительно начального пикселя (в системе координат c'x'y').
+         */
+        private final int[] iIncs;
+        private final int[] jIncs;
+        /**
+         * Смещения пикселей лучей (без начального пикселя) относительно начального пикселя в порядке удаления от него
+         * (в системе координат c'x'y').
+         */
+        private final int[][] offsetsI;
+        private final int[][] offsetsJ;
+
+        private Templates(int raysNumber) {
+            iIncs = new int[raysNumber];
+            jIncs = new int[raysNumber];
+            offsetsI = new int[raysNumber][];
+            offsetsJ = new int[raysNumber][];
+        }
+    }
+
+    public RayFan(RayDirections directions, double height, double pixelSize, double focalLength, int resX, int resY) {
+        this.directions = directions;
+        this.height = height;
+        this.pixelSize = pixelSize;
+        this.focalLength = focalLength;
+        this.resX = resX;
+        this.resY = resY;
+    }
+
+    public RayDirections getDirections() {
+        return directions;
+    }
+
+    /**
+     * Вычисляет шаблоны лучей земной длины {@code length} так же, как это делает метод {@link Main#findJump} для
+     * луча, начинающегося в пикселе (0,0): обход ведётся вдоль той оси, проекция на которую длиннее.
+     */
+    private Templates makeTemplates(double length) {
+        var t = new Templates(directions.size());
+        for (int k = 0; k < directions.size(); k++) {
+            int eI = t.iIncs[k] = (int) round(Thermogram.earthToDiscreteMatrix(length * directions.sin(k), height,
+                    pixelSize, focalLength));
+            int eJ = t.jIncs[k] = (int) round(Thermogram.earthToDiscreteMatrix(length * directions.cos(k), height,
+                    pixelSize, focalLength));
+            if (eI == 0 && eJ == 0) {
+                t.offsetsI[k] = t.offsetsJ[k] = new int[0];
+                continue;
+            }
+            boolean inversion = abs(eI) < abs(eJ);
+            int fI = !inversion ? eI : eJ;
+            int fJ = !inversion ? eJ : eI;
+            int first = (int) signum(fI);
+            int steps = abs(fI - first);
+            int[] is = t.offsetsI[k] = new int[steps + 1];
+            int[] js = t.offsetsJ[k] = new int[steps + 1];
+            int[] count = new int[1];
+            RasterLine.walk(first, fI, steps, i -> i * (fJ + 0.) / fI, (i, j) -> {
+                is[count[0]] = !inversion ? i : j;
+                js[count[0]] = !inversion ? j : i;
+                count[0]++;
+                return true;
+            });
+        }
+        return t;
+    }
+
+    /**
+     * Обходит все лучи земной длины {@code length}, начинающиеся в пикселе {@code start}, и записывает в
+     * {@code jumpPixels[k]} и {@code avEndTemps[k]} то же, что выдаёт метод {@link Main#findJump} для луча с номером
+     * {@code k}.
+     * <p>
+     * Шаблоны лучей запрашиваются один раз для всего веера. Пиксель с температурным контрастом ищется от конца луча,
+     * поэтому температуры пикселей, расположенных между начальным пикселем и этим пикселем, не требуются.
+     */
+    public void castAll(double length, Pixel start, double tempJump, int numberEndPixels, ThermalFrame thermalFrame,
+                        Pixel[] jumpPixels, double[] avEndTemps) {
+        Templates t = templates.computeIfAbsent(length, this::makeTemplates);
+        int sI = start.getI();
+        int sJ = start.getJ();
+        for (int k = 0; k < directions.size(); k++) {
+            if (sI + t.iIncs[k] < 0 || sI + t.iIncs[k] >= resX || sJ + t.jIncs[k] < 0 || sJ + t.jIncs[k] >= resY) {
+                Object[] jump = Main.findJump(start, directions.angle(k), length, tempJump, numberEndPixels,
+                        thermalFrame, height, pixelSize, focalLength, resX, resY);
+                jumpPixels[k] = (Pixel) jump[0];
+                avEndTemps[k] = (double) jump[1];
+                continue;
+            }
+
+            int[] is = t.offsetsI[k];
+            int[] js = t.offsetsJ[k];
+            int count = is.length;
+            if (count == 0) {
+                jumpPixels[k] = new Pixel(-2, -2);
+                avEndTemps[k] = 0;
+                continue;
+            }
+
+            jumpPixels[k] = new Pixel(-1, -1);
+            double currTemp = thermalFrame.getAtPixel(sI + is[count - 1], sJ + js[count - 1]);
+            for (int p = count - 1; p > 0; p--) {
+                double prevTemp = thermalFrame.getAtPixel(sI + is[p - 1], sJ + js[p - 1]);
+                if (abs(currTemp - prevTemp) >= tempJump) {
+                    jumpPixels[k] = new Pixel(sI + is[p], sJ + js[p]);
+                    break;
+                }
+                currTemp = prevTemp;
+            }
+
+            double avEndTemp = 0;
+            int number = min(numberEndPixels, count);
+            for (int p = count - 1; p > count - 1 - number; p--)
+                avEndTemp += thermalFrame.getAtPixel(sI + is[p], sJ + js[p]);
+            avEndTemps[k] = avEndTemp / number;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Содержит методы для чтения и записи файлов с температурными данными в двоичном формате.
+ * <p>
+ * Файл состоит из заголовка и таблицы температур, записанной построчно (начиная с верхней строки термограммы).
+ * Все значения записаны с порядком байтов little-endian. Заголовок содержит:
+ * <ul>
+ *     <li> подпись {@code MAGIC} (4 байта),</li>
+ *     <li> ширину {@code resX} и высоту {@code resY} таблицы (по 4 байта),</li>
+ *     <li> номер способа кодирования значений {@link Encoding} (4 байта),</li>
+ *     <li> коэффициенты {@code scale} и {@code offset} (по 8 байт), такие что температура равна
+ *     {@code offset+scale*q}, где {@code q} - записанное значение (используются только при кодировании
+ *     {@link Encoding#INT16}),</li>
+ *     <li> число {@code n} параметров калибровки (4 байта) и сами параметры, использованные при вычислении температур
+ *     (по 8 байт).</li>
+ * </ul>
+ * Таблица температур прочитывается при помощи отображения файла в память, без промежуточного разбора текста, а
+ * заголовок (при проверке актуальности файла) - обычным чтением.
+ */
+public final class RealTempsFile {
+    /**
+     * Подпись файла.
+     */
+    private final static int MAGIC = 0x504D5452; // "RTMP"
+    /**
+     * Длина заголовка без параметров калибровки.
+     */
+    private final static int HEADER_LENGTH = 4 + 4 + 4 + 4 + 8 + 8 + 4;
+
+    /**
+     * Способ кодирования температур.
+     */
+    public enum Encoding {
+        /**
+         * Число с плавающей точкой двойной точности (8 байт). Значения сохраняются в файле без потерь, но при
+         * чтении (см. {@link #read(String)}) округляются до одинарной точности, как и при {@link #FLOAT32}.
+         */
+        FLOAT64(Double.BYTES),
+        /**
+         * Число с плавающей точкой одинарной точности (4 байта).
+         */
+        FLOAT32(Float.BYTES),
+        /**
+         * Целое число (2 байта), получаемое равномерным квантованием диапазона температур кадра.
+         */
+        INT16(Short.BYTES);
+
+        /**
+         * Число байтов, занимаемых одним значением.
+         */
+        private final int bytesPerValue;
+
+        Encoding(int bytesPerValue) {
+            this.bytesPerValue = bytesPerValue;
+        }
+    }
+
+    /**
+     * Заголовок файла.
+     */
+    private static class Header {
+        private final int resX;
+        private final int resY;
+        private final Encoding encoding;
+        private final double scale;
+        private final double offset;
+        private final double[] params;
+
+        private Header(int resX, int resY, Encoding encoding, double scale, double offset, double[] params) {
+            this.resX = resX;
+            this.resY = resY;
+            this.encoding = encoding;
+            this.scale = scale;
+            this.offset = offset;
+            this.params = params;
+        }
+    }
+
+    private RealTempsFile() {
+    }
+
+    /**
+     * Записывает таблицу температур {@code table} в файл {@code filename} с кодированием {@code encoding}. В заголовок
+     * файла записываются параметры {@code params}, использованные при вычислении температур.
+     *
+     * @throws IOException если произошла ошибка при записи файла
+     */
+    public static void write(double[][] table, double[] params, Encoding encoding, String filename)
+            throws IOException {
+        int resY = table.length;
+        int resX = table[0].length;
+
+        double scale = 1;
+        double offset = 0;
+        if (encoding == Encoding.INT16) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (double[] row : table)
+                for (double value : row) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+            if (max > min)
+                scale = (max - min) / (Short.MAX_VALUE - Short.MIN_VALUE);
+            offset = min - Short.MIN_VALUE * scale;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + params.length * Double.BYTES +
+                resX * resY * encoding.bytesPerValue).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(resX).putInt(resY).putInt(encoding.ordinal())
+                .putDouble(scale).putDouble(offset).putInt(params.length);
+        for (double param : params)
+            buffer.putDouble(param);
+        for (double[] row : table)
+            for (double value : row)
+                switch (encoding) {
+                    case FLOAT64 -> buffer.putDouble(value);
+                    case FLOAT32 -> buffer.putFloat((float) value);
+                    case INT16 -> buffer.putShort((short) Math.max(Short.MIN_VALUE,
+                            Math.min(Short.MAX_VALUE, Math.round((value - offset) / scale))));
+                }
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+
+    /**
+     * Прочитывает таблицу температур из файла {@code filename}. Таблица хранит температуры с одинарной точностью,
+     * поэтому значения, записанные с кодированием {@link Encoding#FLOAT64}, округляются.
+     *
+     * @throws IOException              если произошла ошибка при чтении файла
+     * @throws IllegalArgumentException если файл имеет некорректный формат
+     */
+    public static ThermalFrame read(String filename) throws IOException {
+        MappedByteBuffer buffer = map(filename);
+        Header header = parseHeader(buffer, filename);
+        int resX = header.resX;
+        int resY = header.resY;
+        Encoding encoding = header.encoding;
+
+        if (buffer.remaining() < (long) resX * resY * encoding.bytesPerValue)
+            throw new IllegalArgumentException("Файл " + filename + " содержит меньше " + resX * resY + " значений.");
+
+        float[] data = new float[resX * resY];
+        if (encoding == Encoding.FLOAT32)
+            buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(data);
+        else if (encoding == Encoding.FLOAT64) {
+            DoubleBuffer values = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            for (int k = 0; k < data.length; k++)
+                data[k] = (float) values.get();
+        } else {
+            ShortBuffer values = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+            for (int k = 0; k < data.length; k++)
+                data[k] = (float) (header.offset + header.scale * values.get());
+        }
+        return ThermalFrame.of(resX, resY, data);
+    }
+
+    /**
+     * Прочитывает из заголовка файла {@code filename} параметры, использованные при вычислении температур.
+     *
+     * @throws IOException              если произошла ошибка при чтении файла
+     * @throws IllegalArgumentException если файл имеет некорректный формат
+     */
+    public static double[] readParams(String filename) throws IOException {
+        return readHeader(filename).params;
+    }
+
+    /**
+     * Прочитывает из заголовка файла {@code filename} способ кодирования температур.
+     *
+     * @throws IOException              если произошла ошибка при чтении файла
+     * @throws IllegalArgumentException если файл имеет некорректный формат
+     */
+    public static Encoding readEncoding(String filename) throws IOException {
+        return readHeader(filename).encoding;
+    }
+
+    /**
+     * Разбирает заголовок файла {@code filename}, расположенный в буфере {@code buffer} сразу после подписи, и
+     * перемещает позицию буфера на начало таблицы температур.
+     *
+     * @throws IllegalArgumentException если заголовок содержит недопустимые значения
+     */
+    private static Header parseHeader(ByteBuffer buffer, String filename) {
+        int resX = buffer.getInt();
+        int resY = buffer.getInt();
+        if (resX <= 0 || resY <= 0 || (long) resX * resY > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Файл " + filename + " содержит недопустимые размеры таблицы: " +
+                    resX + "x" + resY + ".");
+        int ordinal = buffer.getInt();
+        if (ordinal < 0 || ordinal >= Encoding.values().length)
+            throw new IllegalArgumentException("Файл " + filename + " содержит недопустимый способ кодирования.");
+        double scale = buffer.getDouble();
+        double offset = buffer.getDouble();
+        int paramsNumber = buffer.getInt();
+        if (paramsNumber < 0 || buffer.remaining() < (long) paramsNumber * Double.BYTES)
+            throw new IllegalArgumentException("Файл " + filename + " содержит недопустимое число параметров: " +
+                    paramsNumber + ".");
+        double[] params = new double[paramsNumber];
+        for (int i = 0; i < params.length; i++)
+            params[i] = buffer.getDouble();
+        return new Header(resX, resY, Encoding.values()[ordinal], scale, offset, params);
+    }
+
+    /**
+     * Прочитывает заголовок файла {@code filename} (без таблицы температур).
+     * <p>
+     * Файл не отображается в память: отображение освобождается только сборщиком мусора, а пока оно существует, файл
+     * нельзя перезаписать в ОС Windows (см. {@link #write(double[][], double[], Encoding, String)}).
+     */
+    private static Header readHeader(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, buffer);
+            buffer.flip();
+            if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC)
+                throw new IllegalArgumentException("Файл " + filename + " не является файлом с температурными " +
+                        "данными.");
+            int paramsNumber = buffer.getInt(HEADER_LENGTH - 4);
+            if (paramsNumber < 0 || paramsNumber > (channel.size() - HEADER_LENGTH) / Double.BYTES)
+                throw new IllegalArgumentException("Файл " + filename + " содержит недопустимое число параметров: " +
+                        paramsNumber + ".");
+            buffer = ByteBuffer.allocate(HEADER_LENGTH + paramsNumber * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(0);
+            readFully(channel, buffer);
+            buffer.flip().position(4);
+            return parseHeader(buffer, filename);
+        }
+    }
+
+    /**
+     * Прочитывает из канала {@code channel} байты, пока буфер {@code buffer} не заполнится или не будет достигнут конец
+     * файла.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) < 0)
+                break;
+    }
+
+    /**
+     * Отображает файл {@code filename} в память и проверяет его подпись.
+     */
+    private static MappedByteBuffer map(String filename) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC)
+            throw new IllegalArgumentException("Файл " + filename + " не является файлом с температурными данными.");
+        return buffer;
+    }
+}
@@ -0,0 +1,156 @@
+package main;
+
+import figures.Pixel;
+import figures.Point;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+
+/**
+ * Содержит таблицу температур термограммы размером {@code height x width}, хранящуюся построчно (начиная с верхней
+ * строки термограммы) в одном массиве типа {@code float[]}, т. е. температура в строке {@code row} и столбце
+ * {@code col} таблицы находится в позиции {@code row*width+col}.
+ * <p>
+ * Таблица может быть построена на основании кадра необработанных температурных данных (см.
+ * {@link #of(RawFrame, double[])}). В этом случае температуры вычисляются только при обращении к ним и запоминаются.
+ * Непосчитанные значения помечаются значением {@code NaN}. Одновременные обращения из разных потоков безопасны, так как
+ * каждое значение всегда вычисляется одинаково.
+ */
+public class ThermalFrame {
+    /**
+     * Ширина таблицы (число столбцов).
+     */
+    private final int width;
+    /**
+     * Высота таблицы (число строк).
+     */
+    private final int height;
+    /**
+     * Температуры.
+     */
+    private final float[] data;
+    /**
+     * Кадр необработанных температурных данных, на основании которого вычисляются температуры, или {@code null}, если
+     * все температуры известны.
+     */
+    private final RawFrame rawFrame;
+    /**
+     * Таблица, при помощи которой необработанные температурные значения конвертируются в температуры.
+     */
+    private final PlanckTable planckTable;
+
+    private ThermalFrame(int width, int height, float[] data, RawFrame rawFrame, PlanckTable planckTable) {
+        this.width = width;
+        this.height = height;
+        this.data = data;
+        this.rawFrame = rawFrame;
+        this.planckTable = planckTable;
+    }
+
+    /**
+     * Возвращает таблицу размером {@code height x width}, значения которой хранятся построчно в массиве {@code data}
+     * (массив не копируется).
+     *
+     * @throws IllegalArgumentException если длина массива {@code data} не равна {@code width*height}
+     */
+    public static ThermalFrame of(int width, int height, float[] data) {
+        if (data.length != width * height)
+            throw new IllegalArgumentException("Длина массива (=" + data.length + ") не равна произведению размеров " +
+                    "таблицы (=" + width + "x" + height + ").");
+        return new ThermalFrame(width, height, data, null, null);
+    }
+
+    /**
+     * Возвращает таблицу температур, соответствующую кадру необработанных температурных данных {@code rawFrame} при
+     * параметрах калибровки {@code params}. Температуры вычисляются только при обращении к ним.
+     */
+    public static ThermalFrame of(RawFrame rawFrame, double[] params) {
+        float[] data = new float[rawFrame.getWidth() * rawFrame.getHeight()];
+        Arrays.fill(data, Float.NaN);
+        return new ThermalFrame(rawFrame.getWidth(), rawFrame.getHeight(), data, rawFrame, PlanckTable.of(params));
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Возвращает температуру, находящуюся в строке {@code row} и столбце {@code col} таблицы.
+     */
+    public float get(int row, int col) {
+        int k = row * width + col;
+        float value = data[k];
+        if (value != value && rawFrame != null) {
+            value = (float) planckTable.toReal(rawFrame.getData()[k]);
+            data[k] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Возвращает температуру в пикселе {@code pixel} (система координат c'x'y').
+     */
+    public float get(Pixel pixel) {
+        return getAtPixel(pixel.getI(), pixel.getJ());
+    }
+
+    /**
+     * Возвращает температуру в точке {@code point} (система координат Oxy).
+     */
+    public float get(Point point) {
+        return get(point.getI(), point.getJ());
+    }
+
+    /**
+     * Возвращает температуру в пикселе ({@code i}, {@code j}) системы координат c'x'y'.
+     */
+    public float getAtPixel(int i, int j) {
+        return get(height - 1 - j, i);
+    }
+
+    /**
+     * Возвращает строку {@code row} таблицы в виде буфера, доступного только для чтения и не копирующего значения.
+     */
+    public FloatBuffer row(int row) {
+        computeRange(row * width, (row + 1) * width);
+        return FloatBuffer.wrap(data, row * width, width).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Возвращает копию столбца {@code col} таблицы. Значения столбца не расположены в массиве подряд, поэтому, в
+     * отличие от строки, столбец копируется.
+     */
+    public float[] column(int col) {
+        float[] column = new float[height];
+        for (int row = 0; row < height; row++)
+            column[row] = get(row, col);
+        return column;
+    }
+
+    /**
+     * Возвращает таблицу температур в виде двумерного массива.
+     */
+    public double[][] toTable() {
+        computeRange(0, data.length);
+        double[][] table = new double[height][width];
+        for (int row = 0; row < height; row++)
+            for (int col = 0; col < width; col++)
+                table[row][col] = data[row * width + col];
+        return table;
+    }
+
+    /**
+     * Вычисляет температуры в позициях {@code from, ..., to-1} массива {@code data}, если они ещё не вычислены.
+     */
+    private void computeRange(int from, int to) {
+        if (rawFrame != null)
+            for (int k = from; k < to; k++)
+                if (data[k] != data[k])
+                    data[k] = (float) planckTable.toReal(rawFrame.getData()[k]);
+    }
+}
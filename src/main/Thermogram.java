@@ -200,7 +200,7 @@ public class Thermogram {
                                 focalLength, principalPoint, pixelSize),
                         toPixel(previous.getCorners(focalLength, pixelSize, principalPoint)[j + 1 < 4 ? j + 1 : 0],
                                 focalLength, principalPoint, pixelSize));
-                if (!intersection.equals(new Pixel(Integer.MIN_VALUE, Integer.MIN_VALUE)))
+                if (!intersection.equals(Pixel.NO_INTERSECTION))
                     vertices.add(intersection);
             }
         return new Polygon<>(AbstractPoint.order(vertices), focalLength);
@@ -0,0 +1,318 @@
+package main;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static main.RawThermalImage.int32;
+import static main.RawThermalImage.uint16;
+
+
+/**
+ * Содержит EXIF-параметры термограммы, извлекаемые без вызова внешних программ (exiftool):
+ * <ul>
+ *     <li> из сегмента APP1 EXIF - фокальное расстояние, дата съёмки и GPS-координаты,</li>
+ *     <li> из сегмента APP1 XMP - параметры drone-dji:RelativeAltitude и drone-dji:GimbalYawDegree,</li>
+ *     <li> из записей FFF CameraInfo и RawData (см. {@link RawThermalImage}) - параметры калибровки и размеры
+ *     необработанного температурного кадра (только при {@code calibration=true}).</li>
+ * </ul>
+ * Параметры записываются в формате JSON так же, как это делает exiftool с опциями {@code -j -n}, т. е. файлы,
+ * создаваемые программой, совпадают с файлами, создаваемыми скриптами thermograms_info и global_params.
+ * <p>
+ * https://exiftool.org/TagNames/EXIF.html, https://exiftool.org/TagNames/FLIR.html
+ */
+public class ThermogramMetadata {
+    /**
+     * Маркер сегмента APP1.
+     */
+    private final static int APP1 = 0xFFE1;
+    /**
+     * Маркер начала сжатых данных JPEG.
+     */
+    private final static int SOS = 0xFFDA;
+    /**
+     * Начало и конец пакета XMP.
+     */
+    private final static String XMP_BEGIN = "<x:xmpmeta";
+    private final static String XMP_END = "</x:xmpmeta>";
+    /**
+     * Тип записи FFF, содержащей параметры калибровки.
+     */
+    private final static int CAMERA_INFO = 0x20;
+
+    private final static int TAG_EXIF_IFD = 0x8769;
+    private final static int TAG_GPS_IFD = 0x8825;
+    private final static int TAG_DATE_TIME_ORIGINAL = 0x9003;
+    private final static int TAG_FOCAL_LENGTH = 0x920A;
+    private final static int TAG_GPS_LATITUDE_REF = 1;
+    private final static int TAG_GPS_LATITUDE = 2;
+    private final static int TAG_GPS_LONGITUDE_REF = 3;
+    private final static int TAG_GPS_LONGITUDE = 4;
+
+    /**
+     * Регулярное выражение для чисел, которые exiftool записывает в JSON без кавычек.
+     */
+    private final static Pattern JSON_NUMBER = Pattern.compile("-?(\\d|[1-9]\\d{1,14})(\\.\\d{1,16})?(e[-+]?\\d{1,3})?",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Путь к термограмме.
+     */
+    private final String sourceFile;
+    /**
+     * Дата съёмки (в формате EXIF, пригодном для сравнения строк) или {@code null}, если она отсутствует.
+     */
+    private String dateTimeOriginal;
+    /**
+     * Значения параметров в формате JSON, упорядоченные так, как их записывает exiftool.
+     */
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    private ThermogramMetadata(String sourceFile) {
+        this.sourceFile = sourceFile;
+    }
+
+    /**
+     * Извлекает параметры термограммы {@code filename}. Если {@code calibration} равно {@code true}, то извлекаются
+     * параметры, необходимые для файла {@code GLOBAL_PARAMS}, иначе - для файла {@code THERMOGRAMS_INFO}.
+     *
+     * @throws IOException              если произошла ошибка при чтении файла
+     * @throws IllegalArgumentException если файл не является изображением JPEG или (при {@code calibration=true})
+     *                                  радиометрической термограммой
+     */
+    public static ThermogramMetadata read(String filename, boolean calibration) throws IOException {
+        byte[] jpeg = Files.readAllBytes(Paths.get(filename));
+        var metadata = new ThermogramMetadata(filename.replace('\\', '/'));
+
+        double[] focalLength = new double[1];
+        String[] xmp = new String[1];
+        double[][] gps = new double[2][];
+        String[] gpsRefs = new String[2];
+
+        if (jpeg.length < 4 || uint16(jpeg, 0, true) != 0xFFD8)
+            throw new IllegalArgumentException("Файл " + filename + " не является изображением JPEG.");
+        int p = 2;
+        while (p + 4 <= jpeg.length && (jpeg[p] & 0xff) == 0xFF) {
+            int marker = uint16(jpeg, p, true);
+            if (marker == SOS)
+                break;
+            int length = uint16(jpeg, p + 2, true);
+            int data = p + 4;
+            int end = Math.min(p + 2 + length, jpeg.length);
+            if (marker == APP1 && startsWith(jpeg, data, "Exif\0\0"))
+                metadata.readExif(jpeg, data + 6, end, focalLength, gps, gpsRefs);
+            // Пакет XMP находится либо в отдельном сегменте APP1, либо (у термограмм DJI) в конце сегмента EXIF.
+            if (marker == APP1 && xmp[0] == null) {
+                int xmpBegin = indexOf(jpeg, XMP_BEGIN, data, end);
+                int xmpEnd = xmpBegin >= 0 ? indexOf(jpeg, XMP_END, xmpBegin, end) : -1;
+                if (xmpEnd >= 0)
+                    xmp[0] = new String(jpeg, xmpBegin, xmpEnd + XMP_END.length() - xmpBegin, StandardCharsets.UTF_8);
+            }
+            p += 2 + length;
+        }
+
+        if (calibration) {
+            metadata.values.put("FocalLength", format(focalLength[0]));
+            metadata.readCalibration(RawThermalImage.extractFff(jpeg, filename), filename);
+        } else {
+            metadata.values.put("RelativeAltitude", xmpValue(xmp[0], "RelativeAltitude"));
+            metadata.values.put("GimbalYawDegree", xmpValue(xmp[0], "GimbalYawDegree"));
+            for (int k = 0; k < 2; k++)
+                if (gps[k] != null && gps[k].length >= 3) {
+                    double value = gps[k][0] + (gps[k][1] + gps[k][2] / 60) / 60;
+                    if ("S".equals(gpsRefs[k]) || "W".equals(gpsRefs[k]))
+                        value = -value;
+                    metadata.values.put(k == 0 ? "GPSLatitude" : "GPSLongitude", format(value));
+                }
+            metadata.values.values().removeIf(value -> value == null);
+        }
+        return metadata;
+    }
+
+    /**
+     * Возвращает дату съёмки или {@code null}, если она отсутствует.
+     */
+    public String getDateTimeOriginal() {
+        return dateTimeOriginal;
+    }
+
+    /**
+     * Возвращает представление параметров в виде объекта JSON, строки которого (кроме первой) начинаются с отступа
+     * {@code indent}.
+     */
+    public String toJson(String indent) {
+        var json = new StringBuilder("{\n");
+        json.append(indent).append("  \"SourceFile\": \"").append(sourceFile.replace("\\", "\\\\")
+                .replace("\"", "\\\"")).append('"');
+        for (Map.Entry<String, String> entry : values.entrySet())
+            json.append(",\n").append(indent).append("  \"").append(entry.getKey()).append("\": ")
+                    .append(entry.getValue());
+        return json.append('\n').append(indent).append('}').toString();
+    }
+
+    /**
+     * Разбирает данные TIFF сегмента EXIF, находящиеся в позициях {@code from, ..., to-1} массива {@code bytes}.
+     */
+    private void readExif(byte[] bytes, int from, int to, double[] focalLength, double[][] gps, String[] gpsRefs) {
+        if (from + 8 > to)
+            return;
+        boolean bigEndian = bytes[from] == 'M';
+        int ifd0 = int32(bytes, from + 4, bigEndian);
+        int exifIfd = -1;
+        int gpsIfd = -1;
+        for (int[] entry : entries(bytes, from, to, ifd0, bigEndian)) {
+            if (entry[0] == TAG_EXIF_IFD)
+                exifIfd = entry[3];
+            else if (entry[0] == TAG_GPS_IFD)
+                gpsIfd = entry[3];
+        }
+        if (exifIfd >= 0)
+            for (int[] entry : entries(bytes, from, to, exifIfd, bigEndian)) {
+                if (entry[0] == TAG_FOCAL_LENGTH) {
+                    double[] values = rationals(bytes, from, to, entry, bigEndian);
+                    if (values != null && values.length > 0)
+                        focalLength[0] = values[0];
+                } else if (entry[0] == TAG_DATE_TIME_ORIGINAL)
+                    dateTimeOriginal = ascii(bytes, from, to, entry);
+            }
+        if (gpsIfd >= 0)
+            for (int[] entry : entries(bytes, from, to, gpsIfd, bigEndian))
+                switch (entry[0]) {
+                    case TAG_GPS_LATITUDE_REF -> gpsRefs[0] = ascii(bytes, from, to, entry);
+                    case TAG_GPS_LATITUDE -> gps[0] = rationals(bytes, from, to, entry, bigEndian);
+                    case TAG_GPS_LONGITUDE_REF -> gpsRefs[1] = ascii(bytes, from, to, entry);
+                    case TAG_GPS_LONGITUDE -> gps[1] = rationals(bytes, from, to, entry, bigEndian);
+                }
+    }
+
+    /**
+     * Возвращает записи IFD, начинающегося со смещения {@code ifd} относительно начала {@code tiff} данных TIFF, в виде
+     * массивов {тег, тип, число значений, значение или смещение значений, позиция записи}.
+     */
+    private static int[][] entries(byte[] bytes, int tiff, int to, int ifd, boolean bigEndian) {
+        if (ifd < 0 || (long) tiff + ifd + 2 > to)
+            return new int[0][];
+        int number = uint16(bytes, tiff + ifd, bigEndian);
+        if ((long) tiff + ifd + 2 + 12 * number > to)
+            return new int[0][];
+        int[][] entries = new int[number][];
+        for (int k = 0; k < number; k++) {
+            int e = tiff + ifd + 2 + 12 * k;
+            entries[k] = new int[]{uint16(bytes, e, bigEndian), uint16(bytes, e + 2, bigEndian),
+                    int32(bytes, e + 4, bigEndian), int32(bytes, e + 8, bigEndian), e};
+        }
+        return entries;
+    }
+
+    /**
+     * Возвращает значения записи {@code entry} типа RATIONAL или {@code null}, если они выходят за пределы данных TIFF
+     * (т. е. за позицию {@code to}).
+     */
+    private static double[] rationals(byte[] bytes, int tiff, int to, int[] entry, boolean bigEndian) {
+        if (entry[2] < 0 || entry[3] < 0 || (long) tiff + entry[3] + 8L * entry[2] > to)
+            return null;
+        double[] values = new double[entry[2]];
+        for (int k = 0; k < values.length; k++) {
+            int p = tiff + entry[3] + 8 * k;
+            long numerator = int32(bytes, p, bigEndian) & 0xFFFFFFFFL;
+            long denominator = int32(bytes, p + 4, bigEndian) & 0xFFFFFFFFL;
+            values[k] = (double) numerator / denominator;
+        }
+        return values;
+    }
+
+    /**
+     * Возвращает значение записи {@code entry} типа ASCII (без завершающего нулевого символа) или {@code null}, если
+     * оно выходит за пределы данных TIFF (т. е. за позицию {@code to}).
+     */
+    private static String ascii(byte[] bytes, int tiff, int to, int[] entry) {
+        int length = entry[2];
+        if (length < 0 || length > 4 && (entry[3] < 0 || (long) tiff + entry[3] + length > to))
+            return null;
+        int p = length <= 4 ? entry[4] + 8 : tiff + entry[3];
+        while (length > 0 && bytes[p + length - 1] == 0)
+            length--;
+        return new String(bytes, p, length, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Извлекает параметры калибровки и размеры необработанного температурного кадра из данных FFF {@code fff}.
+     */
+    private void readCalibration(byte[] fff, String filename) {
+        int[] cameraInfo = RawThermalImage.findRecord(fff, CAMERA_INFO, filename);
+        int[] rawData = RawThermalImage.findRecord(fff, RawThermalImage.RAW_DATA, filename);
+        if (cameraInfo == null || rawData == null || cameraInfo[1] < 0x310)
+            throw new IllegalArgumentException("Термограмма " + filename + " не содержит параметров калибровки.");
+
+        int c = cameraInfo[0];
+        boolean bigEndian = RawThermalImage.isBigEndian(fff, c);
+        values.put("PlanckR1", format(float32(fff, c + 0x58, bigEndian)));
+        values.put("PlanckR2", format(float32(fff, c + 0x30c, bigEndian)));
+        values.put("PlanckO", format(int32(fff, c + 0x308, bigEndian)));
+        values.put("PlanckB", format(float32(fff, c + 0x5c, bigEndian)));
+        values.put("PlanckF", format(float32(fff, c + 0x60, bigEndian)));
+        values.put("Emissivity", format(float32(fff, c + 0x20, bigEndian)));
+        values.put("ReflectedApparentTemperature", format(float32(fff, c + 0x28, bigEndian) - 273.15));
+
+        int r = rawData[0];
+        bigEndian = RawThermalImage.isBigEndian(fff, r);
+        values.put("RawThermalImageHeight", format(uint16(fff, r + 4, bigEndian)));
+        values.put("RawThermalImageWidth", format(uint16(fff, r + 2, bigEndian)));
+    }
+
+    private static double float32(byte[] bytes, int p, boolean bigEndian) {
+        return Float.intBitsToFloat(int32(bytes, p, bigEndian));
+    }
+
+    /**
+     * Возвращает значение параметра drone-dji:{@code name} из данных XMP {@code xmp} (в виде элемента или атрибута) в
+     * формате JSON или {@code null}, если параметр отсутствует.
+     */
+    private static String xmpValue(String xmp, String name) {
+        if (xmp == null)
+            return null;
+        Matcher matcher = Pattern.compile("drone-dji:" + name + "(?:>([^<]*)<|=\"([^\"]*)\")").matcher(xmp);
+        if (!matcher.find())
+            return null;
+        String value = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+        return JSON_NUMBER.matcher(value).matches() ? value : "\"" + value + "\"";
+    }
+
+    /**
+     * Форматирует число {@code value} так же, как exiftool (15 значащих цифр без завершающих нулей).
+     */
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            return String.valueOf((long) value);
+        return new BigDecimal(value).round(new MathContext(15, RoundingMode.HALF_EVEN)).stripTrailingZeros()
+                .toPlainString();
+    }
+
+    /**
+     * Возвращает позицию первого вхождения строки {@code str} в массив {@code bytes} между позициями {@code from} и
+     * {@code to} или {@code -1}, если вхождений нет.
+     */
+    private static int indexOf(byte[] bytes, String str, int from, int to) {
+        for (int p = from; p + str.length() <= to; p++)
+            if (startsWith(bytes, p, str))
+                return p;
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] bytes, int p, String prefix) {
+        if (p + prefix.length() > bytes.length)
+            return false;
+        for (int k = 0; k < prefix.length(); k++)
+            if (bytes[p + k] != prefix.charAt(k))
+                return false;
+        return true;
+    }
+}
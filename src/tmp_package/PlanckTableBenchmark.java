@@ -0,0 +1,83 @@
+package tmp_package;
+
+import main.Helper;
+import main.Pgm;
+import main.PlanckTable;
+import main.RawFrame;
+
+import java.io.IOException;
+import java.util.Random;
+
+
+/**
+ * Сравнивает время конвертации кадра необработанных температурных данных размером {@code 640 x 512} в таблицу
+ * температур по формуле {@link Helper#rawValueToReal(int, double[])} и при помощи таблицы {@link PlanckTable} (см.
+ * {@link Helper#rawFrameToReal(RawFrame, double[])}), а также время построения таблицы. Проверяет, что результаты
+ * конвертации совпадают.
+ * <p>
+ * Используются параметры калибровки термограмм из каталога {@code sample_thermograms}. Если указан файл в формате PGM,
+ * то конвертируется кадр из этого файла, иначе - синтетический кадр со случайными значениями из диапазона значений
+ * этих термограмм.
+ * <p>
+ * Запуск: {@code java tmp_package.PlanckTableBenchmark [число_повторов [файл_PGM]]}.
+ */
+class PlanckTableBenchmark {
+    private final static int HEIGHT = 512;
+    private final static int WIDTH = 640;
+    /**
+     * Planck R1, Planck R2, Planck O, Planck B, Planck F, emissivity, Reflected Apparent Temperature (в Кельвинах).
+     */
+    private final static double[] PARAMS = {344449, 1, -515, 1428, 1, 1, 19.9999938964844 + 273.15};
+
+    static RawFrame syntheticFrame(long seed) {
+        var random = new Random(seed);
+        int[] data = new int[HEIGHT * WIDTH];
+        for (int k = 0; k < data.length; k++)
+            data[k] = 1400 + random.nextInt(800);
+        return new RawFrame(WIDTH, HEIGHT, data);
+    }
+
+    static double[][] formulaToReal(RawFrame rawFrame, double[] params) {
+        double[][] realTable = new double[rawFrame.getHeight()][rawFrame.getWidth()];
+        for (int i = 0; i < realTable.length; i++)
+            for (int j = 0; j < realTable[0].length; j++)
+                realTable[i][j] = Helper.rawValueToReal(rawFrame.get(i, j), params);
+        return realTable;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        RawFrame rawFrame = args.length > 1 ? Pgm.read(args[1], WIDTH, HEIGHT) : syntheticFrame(1);
+
+        // Построение таблицы замеряется для разных наборов параметров, т. к. таблицы кэшируются.
+        long start = System.nanoTime();
+        for (int k = 0; k < repetitions; k++) {
+            double[] params = PARAMS.clone();
+            params[5] = 1 - 1e-6 * (k + 1);
+            PlanckTable.of(params);
+        }
+        double build = (System.nanoTime() - start) / 1e6 / repetitions;
+
+        double[][] formula = formulaToReal(rawFrame, PARAMS); // прогрев
+        start = System.nanoTime();
+        for (int k = 0; k < repetitions; k++)
+            formula = formulaToReal(rawFrame, PARAMS);
+        double formulaTime = (System.nanoTime() - start) / 1e6 / repetitions;
+
+        double[][] table = Helper.rawFrameToReal(rawFrame, PARAMS); // прогрев и построение таблицы
+        start = System.nanoTime();
+        for (int k = 0; k < repetitions; k++)
+            table = Helper.rawFrameToReal(rawFrame, PARAMS);
+        double tableTime = (System.nanoTime() - start) / 1e6 / repetitions;
+
+        int mismatches = 0;
+        for (int i = 0; i < HEIGHT; i++)
+            for (int j = 0; j < WIDTH; j++)
+                if (Double.doubleToLongBits(formula[i][j]) != Double.doubleToLongBits(table[i][j]))
+                    mismatches++;
+
+        System.out.printf("формула: %.2f мс на кадр%n", formulaTime);
+        System.out.printf("таблица: %.2f мс на кадр (построение таблицы: %.2f мс)%n", tableTime, build);
+        System.out.printf("ускорение: %.1f раз, несовпадений: %d%n", formulaTime / tableTime, mismatches);
+    }
+}
@@ -0,0 +1,54 @@
+package tmp_package;
+
+import figures.Point;
+import figures.Rectangle;
+import main.BitMask;
+
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Замеряет время работы метода {@link Rectangle#findRectangles(BitMask, int, double, int)} на синтетической маске
+ * размером {@code 512 x 640} с несколькими большими "горячими" зонами (эллипсами, часть точек которых выброшена
+ * случайным образом).
+ * <p>
+ * Запуск: {@code java tmp_package.RectanglesBenchmark [число_повторов [высота_полосы]]}.
+ */
+class RectanglesBenchmark {
+    private final static int HEIGHT = 512;
+    private final static int WIDTH = 640;
+
+    static BitMask syntheticTable(long seed) {
+        var random = new Random(seed);
+        var table = new BitMask(HEIGHT, WIDTH);
+        // Центр, полуоси и доля выброшенных точек каждого эллипса.
+        double[][] ellipses = {
+                {250, 320, 180, 260, 0.1},
+                {60, 80, 40, 60, 0.3},
+                {440, 560, 50, 70, 0.05}
+        };
+        for (double[] e : ellipses)
+            for (int i = 0; i < HEIGHT; i++)
+                for (int j = 0; j < WIDTH; j++)
+                    if (Math.pow((i - e[0]) / e[2], 2) + Math.pow((j - e[1]) / e[3], 2) <= 1 &&
+                            random.nextDouble() >= e[4])
+                        table.set(i, j);
+        return table;
+    }
+
+    public static void main(String[] args) {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int tileSize = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        BitMask table = syntheticTable(1);
+        for (int tile : new int[]{0, tileSize})
+            for (int maxLength : new int[]{-1, 40}) {
+                List<Rectangle<Point>> rectangles = Rectangle.findRectangles(table, maxLength, 0, tile); // прогрев
+                long start = System.nanoTime();
+                for (int k = 0; k < repetitions; k++)
+                    rectangles = Rectangle.findRectangles(table, maxLength, 0, tile);
+                System.out.printf("tileSize=%d, maxLength=%d: %d прямоугольников, %.1f мс на кадр%n", tile, maxLength,
+                        rectangles.size(), (System.nanoTime() - start) / 1e6 / repetitions);
+            }
+    }
+}